@@ -93,7 +93,7 @@ export default class MapComponent extends Component {
       if (!cell.state.damaged && cell.state.heat < significantHeat) {
         continue;
       }
-      const rectangle = this.simulation.grid.createRectangle(cell.coordinates);
+      const rectangle = this.simulation.grid.createRectangle(cell.coordinates, cell.span);
       const style = this.getRectangleStyle(cell);
       rectangle.setStyle(style);
       this.model.vectorSource.addFeature(rectangle);
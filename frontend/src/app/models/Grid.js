@@ -12,11 +12,11 @@ export class Grid {
     return this.createRectangle(this.startCoordinates);
   }
 
-  createRectangle(coordinates) {
+  createRectangle(coordinates, span = 1) {
     const leftLon = coordinates.x / this.scale;
-    const rightLon = (coordinates.x + 1) / this.scale;
+    const rightLon = (coordinates.x + span) / this.scale;
     const bottomLat = coordinates.y / this.scale;
-    const topLat = (coordinates.y + 1) / this.scale;
+    const topLat = (coordinates.y + span) / this.scale;
 
     const geometry = new Polygon([
       [
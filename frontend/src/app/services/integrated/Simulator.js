@@ -40,20 +40,28 @@ export class Simulator {
       return true;
     }
     const startTick = simulation.steps.length;
-
-    const response = await fetch("/simulation/progress", {
-      method: "POST",
-      headers: { "Content-Type": "application/json" },
-      body: JSON.stringify({ simulationId: simulation.id, startTick, endTick }),
+    const params = new URLSearchParams({
+      simulationId: simulation.id,
+      startTick,
+      endTick,
     });
 
-    if (!response.ok) {
-      return false;
-    }
-
-    const body = await response.json();
-    simulation.appendSteps(body.steps, startTick);
-
-    return true;
+    return new Promise((resolve) => {
+      const source = new EventSource(`/simulation/stream?${params}`);
+      let tick = startTick;
+      source.onmessage = (event) => {
+        const step = JSON.parse(event.data);
+        simulation.appendSteps([step], tick);
+        tick += 1;
+        if (step.final || endTick < tick) {
+          source.close();
+          resolve(true);
+        }
+      };
+      source.onerror = () => {
+        source.close();
+        resolve(startTick < tick);
+      };
+    });
   }
 }
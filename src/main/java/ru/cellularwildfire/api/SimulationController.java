@@ -1,32 +1,81 @@
 package ru.cellularwildfire.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 import ru.cellularwildfire.api.params.SimulationCreationParams;
 import ru.cellularwildfire.api.params.SimulationIdParams;
 import ru.cellularwildfire.api.params.SimulationProgressParams;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CellIndex;
+import ru.cellularwildfire.models.CoarseBlocks;
+import ru.cellularwildfire.models.Grid;
 import ru.cellularwildfire.models.LatLng;
 import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepDelta;
+import ru.cellularwildfire.models.StepDeltaEncoder;
+import ru.cellularwildfire.models.StepWireFormat;
+import ru.cellularwildfire.services.CellIndexCache;
+import ru.cellularwildfire.services.LookAheadScheduler;
 import ru.cellularwildfire.services.SimulationManager;
 import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.StepPayloadCache;
+import ru.cellularwildfire.services.StepPublisher;
+import ru.cellularwildfire.services.TileRenderer;
 
 @RestController
 public final class SimulationController {
   private final SimulationManager simulationManager;
   private final Simulator simulator;
+  private final LookAheadScheduler lookAheadScheduler;
+  private final StepPublisher stepPublisher;
+  private final StepPayloadCache stepPayloadCache;
+  private final TileRenderer tileRenderer;
+  private final CellIndexCache cellIndexCache;
+  private final ObjectWriter jsonWriter;
 
   @Autowired
-  public SimulationController(SimulationManager simulationManager, Simulator simulator) {
+  public SimulationController(
+      SimulationManager simulationManager,
+      Simulator simulator,
+      LookAheadScheduler lookAheadScheduler,
+      StepPublisher stepPublisher,
+      StepPayloadCache stepPayloadCache,
+      TileRenderer tileRenderer,
+      CellIndexCache cellIndexCache,
+      ObjectMapper objectMapper) {
     this.simulationManager = simulationManager;
     this.simulator = simulator;
+    this.lookAheadScheduler = lookAheadScheduler;
+    this.stepPublisher = stepPublisher;
+    this.stepPayloadCache = stepPayloadCache;
+    this.tileRenderer = tileRenderer;
+    this.cellIndexCache = cellIndexCache;
+    // The response stream is closed by the container, not by the writer.
+    this.jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
   }
 
   private static boolean isValidPoint(LatLng point) {
@@ -37,6 +86,13 @@ public final class SimulationController {
     return !simulationId.isEmpty() && simulationId.length() <= 100;
   }
 
+  private static boolean isValidBounds(LatLng lowerCorner, LatLng upperCorner) {
+    return isValidPoint(lowerCorner)
+        && isValidPoint(upperCorner)
+        && lowerCorner.lat <= upperCorner.lat
+        && lowerCorner.lng <= upperCorner.lng;
+  }
+
   private static boolean isValidTick(Integer tick) {
     return 0 <= tick;
   }
@@ -72,8 +128,70 @@ public final class SimulationController {
     }
   }
 
+  /**
+   * Returns the steps of the progress as JSON, compressed from the payloads of {@link
+   * StepPayloadCache} if the client accepts zstd or gzip.
+   */
   @PostMapping("/simulation/progress")
-  public Map<String, Object> progressSimulation(@RequestBody SimulationProgressParams params) {
+  public ResponseEntity<StreamingResponseBody> progressSimulation(
+      @RequestBody SimulationProgressParams params,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+          String acceptEncoding) {
+    Simulation simulation = findProgressedSimulation(params);
+    List<Simulation.Step> steps = progressSteps(params, simulation);
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+    Optional<StepPayloadCache.Encoding> encoding =
+        StepPayloadCache.Encoding.negotiate(acceptEncoding);
+    if (!params.isDelta()
+        && !params.hasViewport()
+        && encoding.isPresent()
+        && stepPayloadCache.isEnabled()) {
+      int startTick = params.getStartTick().orElseThrow();
+      return response
+          .header(HttpHeaders.CONTENT_ENCODING, encoding.get().getToken())
+          .body(
+              output ->
+                  stepPayloadCache.writeSteps(
+                      simulation, startTick, steps, encoding.get(), output));
+    }
+
+    Map<String, Object> body = new HashMap<>();
+    if (params.isDelta()) {
+      body.put("deltas", encodeDeltas(params, simulation, steps));
+    } else {
+      body.put("steps", steps);
+    }
+    return response.body(output -> jsonWriter.writeValue(output, body));
+  }
+
+  /** Returns the steps of the progress in the compact binary format of {@link StepWireFormat}. */
+  @PostMapping(value = "/simulation/progress", produces = StepWireFormat.MEDIA_TYPE)
+  public ResponseEntity<StreamingResponseBody> progressSimulationBinary(
+      @RequestBody SimulationProgressParams params) {
+    if (params.isDelta()) {
+      throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Deltas are sent as JSON only");
+    }
+    List<Simulation.Step> steps = progressSteps(params, findProgressedSimulation(params));
+    StreamingResponseBody body = output -> StepWireFormat.write(steps, output);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(StepWireFormat.MEDIA_TYPE))
+        .body(body);
+  }
+
+  private Simulation findSimulation(String simulationId) {
+    Optional<Simulation> simulation = simulationManager.findSimulation(simulationId);
+    if (simulation.isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Simulation not found");
+    }
+    return simulation.get();
+  }
+
+  /** Validates the progress parameters and returns the simulation to progress. */
+  private Simulation findProgressedSimulation(SimulationProgressParams params) {
     if (params.getSimulationId().isEmpty()) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Simulation id not specified");
     }
@@ -95,21 +213,183 @@ public final class SimulationController {
     if (!isValidTick(endTick)) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid end tick");
     }
+    if (params.getBaseTick().isPresent()
+        && !(isValidTick(params.getBaseTick().get()) && params.getBaseTick().get() < startTick)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid base tick");
+    }
+    if (!params.hasValidBounds()
+        || params.getLowerCorner().isPresent()
+            && !isValidBounds(params.getLowerCorner().get(), params.getUpperCorner().get())) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid bounds");
+    }
+    if (params.getCellBudget().isPresent() && params.getCellBudget().get() <= 0) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cell budget");
+    }
 
-    Optional<Simulation> simulation = simulationManager.findSimulation(simulationId);
-    if (simulation.isEmpty()) {
-      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Simulation not found");
+    Simulation simulation = findSimulation(simulationId);
+    if (params.getBaseTick().isPresent() && !simulation.hasStep(params.getBaseTick().get())) {
+      String reason = "Base tick %d not simulated".formatted(params.getBaseTick().get());
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
     }
+    return simulation;
+  }
 
-    simulator.progressSimulation(simulation.get(), endTick);
+  private List<Simulation.Step> progressSteps(
+      SimulationProgressParams params, Simulation simulation) {
+    int startTick = params.getStartTick().orElseThrow();
+    int endTick = params.getEndTick().orElseThrow();
+    simulator.progressSimulation(simulation, endTick);
+    lookAheadScheduler.request(simulation, endTick);
 
-    List<Simulation.Step> steps = simulation.get().getSteps();
-    int toIndex = Math.min(endTick + 1, steps.size());
-    List<Simulation.Step> lastSteps = steps.subList(startTick, toIndex).stream().toList();
+    // Steps are read until the end tick or the release of the simulation.
+    List<Simulation.Step> progressedSteps = new ArrayList<>();
+    for (int tick = startTick; tick <= endTick; tick++) {
+      Optional<Simulation.Step> step = simulation.getSteps().findStep(tick);
+      if (step.isEmpty()) {
+        break;
+      }
+      progressedSteps.add(step.get());
+    }
+    if (!params.hasViewport()) {
+      return progressedSteps;
+    }
+    List<Simulation.Step> viewedSteps = new ArrayList<>(progressedSteps.size());
+    for (int index = 0; index < progressedSteps.size(); index++) {
+      viewedSteps.add(viewStep(params, simulation, startTick + index, progressedSteps.get(index)));
+    }
+    return viewedSteps;
+  }
 
-    Map<String, Object> response = new HashMap<>();
-    response.put("steps", lastSteps);
+  /** Returns the cells of the step within the viewport of the parameters, if any. */
+  private Simulation.Step viewStep(
+      SimulationProgressParams params, Simulation simulation, int tick, Simulation.Step step) {
+    if (!params.hasViewport()) {
+      return step;
+    }
+    CellIndex index = cellIndexCache.getIndex(simulation, tick, step);
+    List<Cell> cells = index.getCells();
+    if (params.getLowerCorner().isPresent()) {
+      Grid grid = simulation.getGrid();
+      cells =
+          index.findCells(
+              grid.coordinatesOf(params.getLowerCorner().get()),
+              grid.coordinatesOf(params.getUpperCorner().get()));
+    }
+    if (params.getCellBudget().isPresent()) {
+      cells = CoarseBlocks.merge(cells, simulation.getGrid(), params.getCellBudget().get());
+    }
 
-    return response;
+    Simulation.Step viewedStep = new Simulation.Step();
+    viewedStep.getLiveCells().addAll(cells);
+    if (step.isFinal()) {
+      viewedStep.markAsFinal();
+    }
+    return viewedStep;
+  }
+
+  /**
+   * Returns the first step in full and the following ones as deltas, or all of them as deltas if
+   * the client has the step of the base tick.
+   */
+  private List<StepDelta> encodeDeltas(
+      SimulationProgressParams params, Simulation simulation, List<Simulation.Step> steps) {
+    int startTick = params.getStartTick().orElseThrow();
+    List<StepDelta> deltas = new ArrayList<>(steps.size());
+    StepDeltaEncoder encoder = null;
+    if (params.getBaseTick().isPresent()) {
+      int baseTick = params.getBaseTick().get();
+      // The step may be gone if the simulation has been released since the request was validated.
+      Simulation.Step baseStep =
+          simulation
+              .getSteps()
+              .findStep(baseTick)
+              .orElseThrow(
+                  () ->
+                      new ResponseStatusException(
+                          HttpStatus.NOT_FOUND,
+                          "Step of base tick %d not found".formatted(baseTick)));
+      encoder = new StepDeltaEncoder(viewStep(params, simulation, baseTick, baseStep));
+    }
+    for (int index = 0; index < steps.size(); index++) {
+      if (encoder == null) {
+        deltas.add(StepDelta.full(startTick, steps.get(index)));
+        encoder = new StepDeltaEncoder(steps.get(index));
+      } else {
+        deltas.add(encoder.encode(startTick + index, steps.get(index)));
+      }
+    }
+    return deltas;
+  }
+
+  /**
+   * Streams the steps as server-sent events with ticks as event ids, each step is computed once
+   * the client is ready to receive it. A reconnecting client resumes after the last event id.
+   */
+  @GetMapping(value = "/simulation/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<Simulation.Step>> streamSimulation(
+      @RequestParam String simulationId,
+      @RequestParam(defaultValue = "0") Integer startTick,
+      @RequestParam(required = false) Integer endTick,
+      @RequestHeader(value = "Last-Event-ID", required = false) Integer lastEventId) {
+    if (!isValidSimulationId(simulationId)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid simulation id");
+    }
+    if (lastEventId != null) {
+      startTick = lastEventId + 1;
+    }
+    if (!isValidTick(startTick)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid start tick");
+    }
+    if (endTick != null && !isValidTick(endTick)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid end tick");
+    }
+
+    Simulation simulation = findSimulation(simulationId);
+
+    int firstTick = startTick;
+    int lastTick = endTick == null ? simulation.getTimeline().getLimitTicks() : endTick;
+    return stepPublisher
+        .publishSteps(simulation, firstTick, lastTick)
+        .index()
+        .map(
+            indexedStep ->
+                ServerSentEvent.builder(indexedStep.getT2())
+                    .id(String.valueOf(firstTick + indexedStep.getT1()))
+                    .build());
+  }
+
+  /** Returns a PNG map tile of the fire state of a simulated step. */
+  @GetMapping(
+      value = "/simulation/{simulationId}/tiles/{tick}/{z}/{x}/{y}.png",
+      produces = MediaType.IMAGE_PNG_VALUE)
+  public CompletableFuture<byte[]> renderTile(
+      @PathVariable String simulationId,
+      @PathVariable int tick,
+      @PathVariable int z,
+      @PathVariable int x,
+      @PathVariable int y) {
+    if (!isValidSimulationId(simulationId)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid simulation id");
+    }
+    if (!isValidTick(tick)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid tick");
+    }
+    if (!TileRenderer.isValidTile(z, x, y)) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid tile");
+    }
+
+    Simulation simulation = findSimulation(simulationId);
+    Simulation.Step step =
+        simulation
+            .getSteps()
+            .findStep(tick)
+            .orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Step not simulated"));
+
+    try {
+      return tileRenderer.renderTile(simulation, tick, step, z, x, y);
+    } catch (RejectedExecutionException exception) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many tiles requested");
+    }
   }
 }
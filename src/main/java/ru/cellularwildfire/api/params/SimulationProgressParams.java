@@ -1,15 +1,31 @@
 package ru.cellularwildfire.api.params;
 
 import java.util.Optional;
+import ru.cellularwildfire.models.LatLng;
 
 public final class SimulationProgressParams extends SimulationIdParams {
   private final Integer startTick;
   private final Integer endTick;
+  private final Boolean delta;
+  private final Integer baseTick;
+  private final double[] boundsLonLat;
+  private final Integer cellBudget;
 
-  public SimulationProgressParams(String simulationId, Integer startTick, Integer endTick) {
+  public SimulationProgressParams(
+      String simulationId,
+      Integer startTick,
+      Integer endTick,
+      Boolean delta,
+      Integer baseTick,
+      double[] boundsLonLat,
+      Integer cellBudget) {
     super(simulationId);
     this.startTick = startTick;
     this.endTick = endTick;
+    this.delta = delta;
+    this.baseTick = baseTick;
+    this.boundsLonLat = boundsLonLat;
+    this.cellBudget = cellBudget;
   }
 
   public Optional<Integer> getStartTick() {
@@ -19,4 +35,48 @@ public final class SimulationProgressParams extends SimulationIdParams {
   public Optional<Integer> getEndTick() {
     return endTick == null ? Optional.empty() : Optional.of(endTick);
   }
+
+  /** Returns whether steps are requested as deltas, which a base tick implies. */
+  public boolean isDelta() {
+    return Boolean.TRUE.equals(delta) || baseTick != null;
+  }
+
+  /** Returns the tick of the step the client has, which the first delta is based on. */
+  public Optional<Integer> getBaseTick() {
+    return baseTick == null ? Optional.empty() : Optional.of(baseTick);
+  }
+
+  /** Returns whether the cells are limited to bounds or a cell budget of the viewport. */
+  public boolean hasViewport() {
+    return boundsLonLat != null || cellBudget != null;
+  }
+
+  /** Returns whether the bounds, if any, are given as west, south, east and north. */
+  public boolean hasValidBounds() {
+    return boundsLonLat == null || boundsLonLat.length == 4;
+  }
+
+  /** Returns the south-west corner of the bounds. */
+  public Optional<LatLng> getLowerCorner() {
+    if (boundsLonLat == null || boundsLonLat.length != 4) {
+      return Optional.empty();
+    }
+    return Optional.of(new LatLng(boundsLonLat[1], boundsLonLat[0]));
+  }
+
+  /** Returns the north-east corner of the bounds. */
+  public Optional<LatLng> getUpperCorner() {
+    if (boundsLonLat == null || boundsLonLat.length != 4) {
+      return Optional.empty();
+    }
+    return Optional.of(new LatLng(boundsLonLat[3], boundsLonLat[2]));
+  }
+
+  /**
+   * Returns the number of cells of a step above which burned-out cells are merged into coarse
+   * cells, the level of detail of the viewport.
+   */
+  public Optional<Integer> getCellBudget() {
+    return cellBudget == null ? Optional.empty() : Optional.of(cellBudget);
+  }
 }
@@ -0,0 +1,95 @@
+package ru.cellularwildfire.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Retired cells of a simulation, which have burned out and cooled down among burned-out cells and
+ * cannot change anymore.
+ *
+ * <p>Retired coordinates are marked in a bitmap of 64 by 64 cell tiles. The final states of the
+ * retired cells are appended to primitive columns in retirement order, so a step renders the cells
+ * retired before it as a prefix of the columns. Columnar steps keep the final states in their
+ * frozen chunks, so their retired cells are only marked.
+ */
+public final class BurnedArea {
+  private static final int TILE_SHIFT = 6;
+  private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+  private final LongIndexMap tileIndices = new LongIndexMap();
+  private final List<long[]> tiles = new ArrayList<>();
+  private long[] coordinates = new long[16];
+  private float[] heats = new float[16];
+  private float[] initialFuels = new float[16];
+  private float[] cumulativeCombustionRates = new float[16];
+  private int[] factorIds = new int[16];
+  private int size = 0;
+
+  /** Returns the number of retired cells with kept final states. */
+  public synchronized int size() {
+    return size;
+  }
+
+  public synchronized boolean contains(Coordinates cellCoordinates) {
+    int tileIndex = tileIndices.get(packTile(cellCoordinates));
+    if (tileIndex == LongIndexMap.NO_INDEX) {
+      return false;
+    }
+    int bit = bitOf(cellCoordinates);
+    return (tiles.get(tileIndex)[bit >> 6] & 1L << bit) != 0;
+  }
+
+  public synchronized void retire(Cell cell, int factorId) {
+    retire(cell.getCoordinates());
+    if (size == coordinates.length) {
+      coordinates = Arrays.copyOf(coordinates, 2 * size);
+      heats = Arrays.copyOf(heats, 2 * size);
+      initialFuels = Arrays.copyOf(initialFuels, 2 * size);
+      cumulativeCombustionRates = Arrays.copyOf(cumulativeCombustionRates, 2 * size);
+      factorIds = Arrays.copyOf(factorIds, 2 * size);
+    }
+    Cell.State state = cell.getState();
+    coordinates[size] = cell.getCoordinates().pack();
+    heats[size] = (float) state.getHeat();
+    initialFuels[size] = (float) state.getInitialFuel();
+    cumulativeCombustionRates[size] = state.getCumulativeCombustionRate();
+    factorIds[size] = factorId;
+    size++;
+  }
+
+  /** Marks the coordinates as retired without keeping the final state of the cell. */
+  public synchronized void retire(Coordinates cellCoordinates) {
+    long tileKey = packTile(cellCoordinates);
+    int tileIndex = tileIndices.get(tileKey);
+    if (tileIndex == LongIndexMap.NO_INDEX) {
+      tileIndex = tiles.size();
+      tiles.add(new long[1 << 2 * TILE_SHIFT - 6]);
+      tileIndices.put(tileKey, tileIndex);
+    }
+    int bit = bitOf(cellCoordinates);
+    tiles.get(tileIndex)[bit >> 6] |= 1L << bit;
+  }
+
+  /** Creates cell objects without neighbor links for the given number of first retired cells. */
+  public synchronized List<Cell> materialize(int count, FactorPool factorPool) {
+    List<Cell> cells = new ArrayList<>(count);
+    for (int index = 0; index < count; index++) {
+      Cell.State state =
+          new Cell.State(initialFuels[index], heats[index], cumulativeCombustionRates[index]);
+      cells.add(
+          new Cell(
+              Coordinates.unpack(coordinates[index]), state, factorPool.get(factorIds[index])));
+    }
+    return cells;
+  }
+
+  private static long packTile(Coordinates cellCoordinates) {
+    return Coordinates.pack(
+        cellCoordinates.getX() >> TILE_SHIFT, cellCoordinates.getY() >> TILE_SHIFT);
+  }
+
+  private static int bitOf(Coordinates cellCoordinates) {
+    return (cellCoordinates.getX() & TILE_MASK) << TILE_SHIFT | cellCoordinates.getY() & TILE_MASK;
+  }
+}
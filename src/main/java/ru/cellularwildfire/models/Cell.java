@@ -2,7 +2,6 @@ package ru.cellularwildfire.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.Iterator;
-import java.util.Objects;
 
 public final class Cell {
   public static final double IGNITION_TEMPERATURE = 500;
@@ -12,11 +11,18 @@ public final class Cell {
   private final Coordinates coordinates;
   private final State state;
   private final Factors factors;
+  private final int span;
 
   public Cell(Coordinates coordinates, State state, Factors factors) {
+    this(coordinates, state, factors, 1);
+  }
+
+  /** Creates a cell covering the aligned block of span × span grid cells at the coordinates. */
+  public Cell(Coordinates coordinates, State state, Factors factors, int span) {
     this.coordinates = coordinates;
     this.state = state;
     this.factors = factors;
+    this.span = span;
   }
 
   public Coordinates getCoordinates() {
@@ -31,14 +37,25 @@ public final class Cell {
     return factors;
   }
 
-  public boolean isBurning() {
-    return state.initialFuel > 0
-        && state.getCumulativeCombustionRate() < CUMULATIVE_COMBUSTION_RATE_THRESHOLD
-        && IGNITION_TEMPERATURE <= state.getHeat()
+  /** Returns the side of the block of grid cells the cell covers, 1 unless it is coarse. */
+  public int getSpan() {
+    return span;
+  }
+
+  public static boolean isBurning(
+      double initialFuel, float cumulativeCombustionRate, double heat, Factors factors) {
+    return initialFuel > 0
+        && cumulativeCombustionRate < CUMULATIVE_COMBUSTION_RATE_THRESHOLD
+        && IGNITION_TEMPERATURE <= heat
         && factors.getAirHumidity() < 1
         && factors.getAirTemperature() > 0;
   }
 
+  public boolean isBurning() {
+    return isBurning(
+        state.getInitialFuel(), state.getCumulativeCombustionRate(), state.getHeat(), factors);
+  }
+
   @JsonIgnore
   public Cell getTwin() {
     return vicinity[4];
@@ -92,6 +109,10 @@ public final class Cell {
       this(initialFuel, heat, 0);
     }
 
+    public static double calculateFuel(double initialFuel, float cumulativeCombustionRate) {
+      return initialFuel * (2 - 2 / (1 + Math.exp(-cumulativeCombustionRate)));
+    }
+
     public double getInitialFuel() {
       return initialFuel;
     }
@@ -114,7 +135,7 @@ public final class Cell {
     }
 
     public double getFuel() {
-      return initialFuel * (2 - 2 / (1 + Math.exp(-cumulativeCombustionRate)));
+      return calculateFuel(initialFuel, cumulativeCombustionRate);
     }
 
     public void accountCombustionStep(double combustionRate) {
@@ -136,6 +157,46 @@ public final class Cell {
       this.forestType = forestType;
     }
 
+    private Factors(long packedFactors) {
+      super(
+          (byte) (packedFactors >> 48),
+          (byte) (packedFactors >> 40),
+          (byte) (packedFactors >> 32),
+          (byte) (packedFactors >> 24));
+      this.elevation = (short) (packedFactors >> 8);
+      this.forestType = (byte) packedFactors;
+    }
+
+    /** Packs the compressed factors into a long without creating them. */
+    public static long pack(Weather weather, double elevation, byte forestType) {
+      return pack(
+          weather.airTemperature,
+          weather.airHumidity,
+          weather.windX,
+          weather.windY,
+          compressElevation(elevation),
+          forestType);
+    }
+
+    private static long pack(
+        byte airTemperature,
+        byte airHumidity,
+        byte windX,
+        byte windY,
+        short elevation,
+        byte forestType) {
+      return (airTemperature & 0xFFL) << 48
+          | (airHumidity & 0xFFL) << 40
+          | (windX & 0xFFL) << 32
+          | (windY & 0xFFL) << 24
+          | (elevation & 0xFFFFL) << 8
+          | forestType & 0xFFL;
+    }
+
+    public static Factors unpack(long packedFactors) {
+      return new Factors(packedFactors);
+    }
+
     private static short compressElevation(double elevation) {
       elevation = Math.min(Math.max(0, elevation), 6400);
       return (short) Math.round(elevation / 6400 * Short.MAX_VALUE);
@@ -160,7 +221,11 @@ public final class Cell {
 
     @Override
     public int hashCode() {
-      return Objects.hash(airTemperature, airHumidity, windX, windY, elevation, forestType);
+      return Long.hashCode(pack());
+    }
+
+    public long pack() {
+      return pack(airTemperature, airHumidity, windX, windY, elevation, forestType);
     }
 
     public double getElevation() {
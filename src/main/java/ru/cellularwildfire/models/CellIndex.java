@@ -0,0 +1,310 @@
+package ru.cellularwildfire.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Uniform bucket grid over the cells of a step for range queries.
+ *
+ * <p>Cells are bucketed by their lower corners into aligned blocks of {@value #BUCKET_SPAN} ×
+ * {@value #BUCKET_SPAN} coordinates, and the buckets keep indices of their cells. A query visits
+ * the buckets overlapping the range, widened by the largest cell span below, or all buckets if
+ * there are fewer, so it takes time proportional to the cells near the range rather than to the
+ * whole step.
+ *
+ * <p>An index over the columns of a step keeps slots instead of cells and creates cells of the
+ * found slots only. Since layout slots keep their coordinates, the index of a following step
+ * buckets just the added slots. Buckets are kept in shards of the bucket map and chunks of bucket
+ * entries, and the extended index copies only the shards and chunks it changes, sharing the rest
+ * with the index it extends.
+ *
+ * <p>An index over columns kept for later queries is {@link #withoutColumns()}, so that it does
+ * not keep decoded steps alive, and is {@link #bindTo(Simulation.Step)} its step again to be
+ * queried.
+ */
+public final class CellIndex {
+  public static final int BUCKET_SPAN = 16;
+
+  /** Estimated size of a cell object with its vicinity, coordinates and state. */
+  private static final int CELL_BYTES = 128;
+
+  private static final int SHARD_BITS = 6;
+  private static final int CHUNK_BITS = 8;
+  private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+  private static final int[] NO_ENTRIES = new int[0];
+
+  private final List<Cell> cells;
+  private final CellLayout layout;
+  private final StepColumns columns;
+  private final int size;
+  private final LongIndexMap[] bucketShards;
+  private final long[][] bucketChunks;
+  private final int[][][] entryChunks;
+  private final int bucketCount;
+  private final int maxSpan;
+
+  public CellIndex(List<Cell> cells) {
+    this(cells, null, null);
+  }
+
+  /** Creates an index of the cells or the columns, extending the origin index if any. */
+  private CellIndex(List<Cell> cells, StepColumns columns, CellIndex origin) {
+    this.cells = cells;
+    this.layout = columns == null ? null : columns.getLayout();
+    this.columns = columns;
+    this.size = columns == null ? cells.size() : columns.size();
+    int from = origin == null ? 0 : origin.size;
+    int bucketCount = origin == null ? 0 : origin.bucketCount;
+    LongIndexMap[] bucketShards =
+        origin == null ? new LongIndexMap[1 << SHARD_BITS] : origin.bucketShards.clone();
+    long[][] bucketChunks = origin == null ? new long[0][] : origin.bucketChunks.clone();
+    int[][][] entryChunks = origin == null ? new int[0][][] : origin.entryChunks.clone();
+
+    // Added entries are counted per bucket, which are listed in the order of their first entry.
+    LongIndexMap addedPositions = new LongIndexMap();
+    int[] addedBuckets = new int[16];
+    int[] addedCounts = new int[16];
+    int[] entryPositions = new int[size - from];
+    int maxSpan = origin == null ? 1 : origin.maxSpan;
+    for (int entry = from; entry < size; entry++) {
+      long bucket;
+      if (columns == null) {
+        Cell cell = cells.get(entry);
+        maxSpan = Math.max(maxSpan, cell.getSpan());
+        bucket = bucketOf(cell.getCoordinates().getX(), cell.getCoordinates().getY());
+      } else {
+        bucket = bucketOf(layout.getX(entry), layout.getY(entry));
+      }
+      int shard = shardOf(bucket);
+      LongIndexMap bucketIndices = bucketShards[shard];
+      int bucketIndex =
+          bucketIndices == null ? LongIndexMap.NO_INDEX : bucketIndices.get(bucket);
+      if (bucketIndex == LongIndexMap.NO_INDEX) {
+        // Shards and chunks shared with the origin are copied before they change.
+        if (bucketIndices == null) {
+          bucketIndices = new LongIndexMap();
+          bucketShards[shard] = bucketIndices;
+        } else if (origin != null && bucketIndices == origin.bucketShards[shard]) {
+          bucketIndices = bucketIndices.copy();
+          bucketShards[shard] = bucketIndices;
+        }
+        bucketIndex = bucketCount++;
+        bucketIndices.put(bucket, bucketIndex);
+        int chunk = bucketIndex >> CHUNK_BITS;
+        if (chunk == bucketChunks.length) {
+          bucketChunks = Arrays.copyOf(bucketChunks, chunk + 1);
+          bucketChunks[chunk] = new long[CHUNK_MASK + 1];
+          entryChunks = Arrays.copyOf(entryChunks, chunk + 1);
+          entryChunks[chunk] = new int[CHUNK_MASK + 1][];
+        } else if (origin != null
+            && chunk < origin.bucketChunks.length
+            && bucketChunks[chunk] == origin.bucketChunks[chunk]) {
+          bucketChunks[chunk] = bucketChunks[chunk].clone();
+        }
+        bucketChunks[chunk][bucketIndex & CHUNK_MASK] = bucket;
+      }
+      int position = addedPositions.get(bucketIndex);
+      if (position == LongIndexMap.NO_INDEX) {
+        position = addedPositions.size();
+        addedPositions.put(bucketIndex, position);
+        if (addedBuckets.length == position) {
+          addedBuckets = Arrays.copyOf(addedBuckets, 2 * position);
+          addedCounts = Arrays.copyOf(addedCounts, 2 * position);
+        }
+        addedBuckets[position] = bucketIndex;
+      }
+      addedCounts[position]++;
+      entryPositions[entry - from] = position;
+    }
+    this.maxSpan = maxSpan;
+
+    // Buckets with added entries get new entry arrays, so that the origin keeps its own.
+    int[][] addedEntries = new int[addedPositions.size()][];
+    int[] offsets = new int[addedPositions.size()];
+    for (int position = 0; position < addedEntries.length; position++) {
+      int bucketIndex = addedBuckets[position];
+      int chunk = bucketIndex >> CHUNK_BITS;
+      if (origin != null
+          && chunk < origin.entryChunks.length
+          && entryChunks[chunk] == origin.entryChunks[chunk]) {
+        entryChunks[chunk] = entryChunks[chunk].clone();
+      }
+      int[] entries = entryChunks[chunk][bucketIndex & CHUNK_MASK];
+      entries = entries == null ? NO_ENTRIES : entries;
+      offsets[position] = entries.length;
+      addedEntries[position] = Arrays.copyOf(entries, entries.length + addedCounts[position]);
+      entryChunks[chunk][bucketIndex & CHUNK_MASK] = addedEntries[position];
+    }
+    for (int entry = from; entry < size; entry++) {
+      int position = entryPositions[entry - from];
+      addedEntries[position][offsets[position]++] = entry;
+    }
+    this.bucketShards = bucketShards;
+    this.bucketChunks = bucketChunks;
+    this.entryChunks = entryChunks;
+    this.bucketCount = bucketCount;
+  }
+
+  /** Creates a view of the index reading the cells of the columns. */
+  private CellIndex(CellIndex index, StepColumns columns) {
+    this.cells = index.cells;
+    this.layout = index.layout;
+    this.columns = columns;
+    this.size = index.size;
+    this.bucketShards = index.bucketShards;
+    this.bucketChunks = index.bucketChunks;
+    this.entryChunks = index.entryChunks;
+    this.bucketCount = index.bucketCount;
+    this.maxSpan = index.maxSpan;
+  }
+
+  /**
+   * Returns the index over the slots of the columns of the step if its cells are exactly the
+   * slots of its columns.
+   */
+  public static Optional<CellIndex> ofColumns(Simulation.Step step) {
+    return step.getRenderedColumns().map(columns -> new CellIndex(null, columns, null));
+  }
+
+  private static long bucketOf(int x, int y) {
+    return Coordinates.pack(Math.floorDiv(x, BUCKET_SPAN), Math.floorDiv(y, BUCKET_SPAN));
+  }
+
+  private static int shardOf(long bucket) {
+    return (int) (bucket * 0x9E3779B97F4A7C15L >>> Long.SIZE - SHARD_BITS);
+  }
+
+  /**
+   * Returns the index of a following step of the same simulation built from this index by adding
+   * the slots the step has added, if both indices are over columns.
+   */
+  public Optional<CellIndex> extendTo(Simulation.Step step) {
+    if (layout == null) {
+      return Optional.empty();
+    }
+    return step.getRenderedColumns()
+        .filter(
+            stepColumns ->
+                stepColumns.getLayout().sharesSlots(layout) && size <= stepColumns.size())
+        .map(stepColumns -> new CellIndex(null, stepColumns, this));
+  }
+
+  /** Returns the index without the columns it reads, or this index if it is over cells. */
+  public CellIndex withoutColumns() {
+    return columns == null ? this : new CellIndex(this, null);
+  }
+
+  /**
+   * Returns the index reading the cells of the step, which is the indexed step or another copy of
+   * it, or this index if it is over cells.
+   */
+  public CellIndex bindTo(Simulation.Step step) {
+    if (layout == null) {
+      return this;
+    }
+    StepColumns stepColumns =
+        step.getRenderedColumns()
+            .filter(
+                candidate ->
+                    candidate.getLayout().sharesSlots(layout) && candidate.size() == size)
+            .orElseThrow(() -> new IllegalArgumentException("Step is not the indexed one"));
+    return new CellIndex(this, stepColumns);
+  }
+
+  public List<Cell> getCells() {
+    return layout == null ? cells : getColumns().materialize();
+  }
+
+  private StepColumns getColumns() {
+    if (columns == null) {
+      throw new IllegalStateException("Index is not bound to its step");
+    }
+    return columns;
+  }
+
+  /**
+   * Estimates the memory the index and the cells it keeps take. Shards and chunks are counted in
+   * full, although indices of consecutive steps share most of them.
+   */
+  public long countBytes() {
+    long cellBytes = layout == null ? (long) (CELL_BYTES + 4) * size : 0;
+    return 52L * bucketCount + 4L * size + cellBytes;
+  }
+
+  /**
+   * Returns the cells that overlap the range between the corners, inclusive, in the order of the
+   * buckets.
+   */
+  public List<Cell> findCells(Coordinates lowerCorner, Coordinates upperCorner) {
+    StepColumns columns = layout == null ? null : getColumns();
+    int minX = lowerCorner.getX();
+    int minY = lowerCorner.getY();
+    int maxX = upperCorner.getX();
+    int maxY = upperCorner.getY();
+    List<Cell> foundCells = new ArrayList<>();
+    if (maxX < minX || maxY < minY) {
+      return foundCells;
+    }
+    int fromBucketX = Math.floorDiv(minX - maxSpan + 1, BUCKET_SPAN);
+    int fromBucketY = Math.floorDiv(minY - maxSpan + 1, BUCKET_SPAN);
+    int toBucketX = Math.floorDiv(maxX, BUCKET_SPAN);
+    int toBucketY = Math.floorDiv(maxY, BUCKET_SPAN);
+    long rangeBuckets =
+        ((long) toBucketX - fromBucketX + 1) * ((long) toBucketY - fromBucketY + 1);
+
+    if (rangeBuckets < bucketCount) {
+      for (int bucketY = fromBucketY; bucketY <= toBucketY; bucketY++) {
+        for (int bucketX = fromBucketX; bucketX <= toBucketX; bucketX++) {
+          long bucket = Coordinates.pack(bucketX, bucketY);
+          LongIndexMap bucketIndices = bucketShards[shardOf(bucket)];
+          int bucketIndex =
+              bucketIndices == null ? LongIndexMap.NO_INDEX : bucketIndices.get(bucket);
+          if (bucketIndex != LongIndexMap.NO_INDEX) {
+            addCells(columns, bucketIndex, minX, minY, maxX, maxY, foundCells);
+          }
+        }
+      }
+    } else {
+      for (int bucketIndex = 0; bucketIndex < bucketCount; bucketIndex++) {
+        Coordinates bucket =
+            Coordinates.unpack(bucketChunks[bucketIndex >> CHUNK_BITS][bucketIndex & CHUNK_MASK]);
+        if (fromBucketX <= bucket.getX()
+            && bucket.getX() <= toBucketX
+            && fromBucketY <= bucket.getY()
+            && bucket.getY() <= toBucketY) {
+          addCells(columns, bucketIndex, minX, minY, maxX, maxY, foundCells);
+        }
+      }
+    }
+    return foundCells;
+  }
+
+  private void addCells(
+      StepColumns columns,
+      int bucketIndex,
+      int minX,
+      int minY,
+      int maxX,
+      int maxY,
+      List<Cell> foundCells) {
+    for (int entry : entryChunks[bucketIndex >> CHUNK_BITS][bucketIndex & CHUNK_MASK]) {
+      if (columns != null) {
+        int x = layout.getX(entry);
+        int y = layout.getY(entry);
+        if (minX <= x && x <= maxX && minY <= y && y <= maxY) {
+          foundCells.add(columns.materialize(entry));
+        }
+        continue;
+      }
+      Cell cell = cells.get(entry);
+      int x = cell.getCoordinates().getX();
+      int y = cell.getCoordinates().getY();
+      int span = cell.getSpan();
+      if (x <= maxX && minX <= x + span - 1 && y <= maxY && minY <= y + span - 1) {
+        foundCells.add(cell);
+      }
+    }
+  }
+}
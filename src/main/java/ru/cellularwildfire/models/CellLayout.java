@@ -0,0 +1,149 @@
+package ru.cellularwildfire.models;
+
+import java.util.Arrays;
+
+/**
+ * Arrangement of the cells affected by a simulation.
+ *
+ * <p>Each affected cell gets a stable slot that keeps its index in every later step. Slot
+ * coordinates, initial fuel and the slots of grid neighbors are shared by all steps, so neighbor
+ * lookup is done by index arithmetic instead of pointer chasing.
+ *
+ * <p>The layout grows under the simulation lock, so published steps read it through an immutable
+ * {@link #snapshot()} of the slots they have. A snapshot shares the arrays with the layout, in
+ * which later slots are written past its size or into grown copies, and hides links to them.
+ */
+public final class CellLayout {
+  public static final int NO_SLOT = LongIndexMap.NO_INDEX;
+  private static final int VICINITY_SIZE = 9;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final LongIndexMap slots;
+  private final CellLayout source;
+  private long[] coordinates;
+  private float[] initialFuels;
+  private int[] vicinity;
+  private int size;
+
+  public CellLayout() {
+    this.slots = new LongIndexMap();
+    this.source = this;
+    this.coordinates = new long[INITIAL_CAPACITY];
+    this.initialFuels = new float[INITIAL_CAPACITY];
+    this.vicinity = createVicinity(INITIAL_CAPACITY);
+    this.size = 0;
+  }
+
+  private CellLayout(CellLayout origin) {
+    this.slots = null;
+    this.source = origin;
+    this.coordinates = origin.coordinates;
+    this.initialFuels = origin.initialFuels;
+    this.vicinity = origin.vicinity;
+    this.size = origin.size;
+  }
+
+  public static int vicinityIndexOf(int offsetX, int offsetY) {
+    return 3 * (offsetX + 1) + offsetY + 1;
+  }
+
+  public static int offsetXOf(int vicinityIndex) {
+    return vicinityIndex / 3 - 1;
+  }
+
+  public static int offsetYOf(int vicinityIndex) {
+    return vicinityIndex % 3 - 1;
+  }
+
+  private static int[] createVicinity(int capacity) {
+    int[] vicinity = new int[VICINITY_SIZE * capacity];
+    Arrays.fill(vicinity, NO_SLOT);
+    return vicinity;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Returns an immutable view of the current slots, or this layout if it is a snapshot. */
+  public CellLayout snapshot() {
+    return source == this ? new CellLayout(this) : this;
+  }
+
+  /** Checks whether the layouts are the same or snapshots of the same layout. */
+  public boolean sharesSlots(CellLayout other) {
+    return source == other.source;
+  }
+
+  private int findSlot(Coordinates cellCoordinates) {
+    return slots.get(cellCoordinates.pack());
+  }
+
+  /** Adds a slot and links it with the slots of its grid neighbors. */
+  public int addSlot(Grid grid, Coordinates cellCoordinates, double initialFuel) {
+    if (source != this) {
+      throw new IllegalStateException("Slots cannot be added to a layout snapshot");
+    }
+    if (size == coordinates.length) {
+      grow();
+    }
+    int slot = size++;
+    coordinates[slot] = cellCoordinates.pack();
+    initialFuels[slot] = (float) initialFuel;
+
+    for (int offsetX = -1; offsetX <= 1; offsetX++) {
+      for (int offsetY = -1; offsetY <= 1; offsetY++) {
+        if (offsetX == 0 && offsetY == 0) {
+          continue;
+        }
+        Coordinates neighborCoordinates = grid.getNeighbor(cellCoordinates, offsetX, offsetY);
+        if (cellCoordinates.getY() == neighborCoordinates.getY() && offsetY != 0) {
+          // Cell neighborhood through the poles is not expected.
+          continue;
+        }
+        int otherSlot = findSlot(neighborCoordinates);
+        if (otherSlot != NO_SLOT) {
+          vicinity[VICINITY_SIZE * slot + vicinityIndexOf(offsetX, offsetY)] = otherSlot;
+          vicinity[VICINITY_SIZE * otherSlot + vicinityIndexOf(-offsetX, -offsetY)] = slot;
+        }
+      }
+    }
+    slots.put(coordinates[slot], slot);
+    return slot;
+  }
+
+  public Coordinates getCoordinates(int slot) {
+    return Coordinates.unpack(coordinates[slot]);
+  }
+
+  public int getX(int slot) {
+    return (int) (coordinates[slot] >> 32);
+  }
+
+  public int getY(int slot) {
+    return (int) coordinates[slot];
+  }
+
+  public double getInitialFuel(int slot) {
+    return initialFuels[slot];
+  }
+
+  public int getNeighbor(int slot, int offsetX, int offsetY) {
+    return getVicinitySlot(slot, vicinityIndexOf(offsetX, offsetY));
+  }
+
+  /** Returns the slot at the vicinity index in the same order as {@link Cell} neighbors. */
+  public int getVicinitySlot(int slot, int vicinityIndex) {
+    int vicinitySlot = vicinity[VICINITY_SIZE * slot + vicinityIndex];
+    return vicinitySlot < size ? vicinitySlot : NO_SLOT;
+  }
+
+  private void grow() {
+    int capacity = coordinates.length * 2;
+    coordinates = Arrays.copyOf(coordinates, capacity);
+    initialFuels = Arrays.copyOf(initialFuels, capacity);
+    int[] grownVicinity = createVicinity(capacity);
+    System.arraycopy(vicinity, 0, grownVicinity, 0, vicinity.length);
+    vicinity = grownVicinity;
+  }
+}
@@ -0,0 +1,121 @@
+package ru.cellularwildfire.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-resolution rendering of step cells within a cell budget.
+ *
+ * <p>Burned-out cells are merged into coarse cells of aligned blocks level by level: four blocks
+ * of a span that are all burned out form a block of the doubled span, until the cells fit the
+ * budget or the maximum span is reached. Blocks next to burning cells are not merged, so the
+ * active perimeter keeps full resolution. A coarse cell averages the states of its blocks and
+ * takes the factors of the first of them.
+ */
+public final class CoarseBlocks {
+  public static final int MAX_SPAN = 64;
+
+  private CoarseBlocks() {}
+
+  public static List<Cell> merge(List<Cell> cells, Grid grid, int cellBudget) {
+    List<Cell> mergedCells = cells;
+    for (int span = 2; span <= MAX_SPAN && cellBudget < mergedCells.size(); span *= 2) {
+      mergedCells = mergeLevel(mergedCells, grid, span);
+    }
+    return mergedCells;
+  }
+
+  private static boolean isBurnedOut(Cell cell) {
+    return cell.getState().isDamaged() && !cell.isBurning();
+  }
+
+  private static List<Cell> mergeLevel(List<Cell> cells, Grid grid, int span) {
+    LongIndexMap burningBlocks = new LongIndexMap();
+    LongIndexMap blockIndices = new LongIndexMap();
+    List<List<Cell>> blocks = new ArrayList<>();
+    for (Cell cell : cells) {
+      long block = grid.getBlock(cell.getCoordinates(), span).pack();
+      if (cell.isBurning()) {
+        burningBlocks.put(block, 0);
+      } else if (isBurnedOut(cell) && cell.getSpan() == span / 2) {
+        int blockIndex = blockIndices.get(block);
+        if (blockIndex == LongIndexMap.NO_INDEX) {
+          blockIndex = blocks.size();
+          blocks.add(new ArrayList<>(4));
+          blockIndices.put(block, blockIndex);
+        }
+        blocks.get(blockIndex).add(cell);
+      }
+    }
+
+    boolean[] isMerged = new boolean[blocks.size()];
+    for (int blockIndex = 0; blockIndex < blocks.size(); blockIndex++) {
+      List<Cell> members = blocks.get(blockIndex);
+      isMerged[blockIndex] =
+          members.size() == 4
+              && !isNearBurning(
+                  grid.getBlock(members.get(0).getCoordinates(), span), grid, span, burningBlocks);
+    }
+    if (!containsTrue(isMerged)) {
+      return cells;
+    }
+
+    List<Cell> mergedCells = new ArrayList<>(cells.size());
+    boolean[] isEmitted = new boolean[blocks.size()];
+    for (Cell cell : cells) {
+      int blockIndex =
+          isBurnedOut(cell) && cell.getSpan() == span / 2
+              ? blockIndices.get(grid.getBlock(cell.getCoordinates(), span).pack())
+              : LongIndexMap.NO_INDEX;
+      if (blockIndex == LongIndexMap.NO_INDEX || !isMerged[blockIndex]) {
+        mergedCells.add(cell);
+      } else if (!isEmitted[blockIndex]) {
+        isEmitted[blockIndex] = true;
+        mergedCells.add(createCoarseCell(blocks.get(blockIndex), grid, span));
+      }
+    }
+    return mergedCells;
+  }
+
+  private static boolean isNearBurning(
+      Coordinates block, Grid grid, int span, LongIndexMap burningBlocks) {
+    for (int offsetX = -1; offsetX <= 1; offsetX++) {
+      for (int offsetY = -1; offsetY <= 1; offsetY++) {
+        if (burningBlocks.containsKey(grid.getNeighbor(block, offsetX, offsetY, span).pack())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsTrue(boolean[] values) {
+    for (boolean value : values) {
+      if (value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Cell createCoarseCell(List<Cell> members, Grid grid, int span) {
+    double initialFuel = 0;
+    double heat = 0;
+    double cumulativeCombustionRate = 0;
+    for (Cell member : members) {
+      initialFuel += member.getState().getInitialFuel();
+      heat += member.getState().getHeat();
+      cumulativeCombustionRate += member.getState().getCumulativeCombustionRate();
+    }
+    Cell.State state =
+        new Cell.State(
+            initialFuel / members.size(),
+            heat / members.size(),
+            cumulativeCombustionRate / members.size());
+    return new Cell(
+        grid.getBlock(members.get(0).getCoordinates(), span),
+        state,
+        members.get(0).getFactors(),
+        span);
+  }
+}
@@ -1,7 +1,5 @@
 package ru.cellularwildfire.models;
 
-import java.util.Objects;
-
 public final class Coordinates {
   private final int x;
   private final int y;
@@ -11,6 +9,14 @@ public final class Coordinates {
     this.y = y;
   }
 
+  public static Coordinates unpack(long packedCoordinates) {
+    return new Coordinates((int) (packedCoordinates >> 32), (int) packedCoordinates);
+  }
+
+  public static long pack(int x, int y) {
+    return (long) x << 32 | y & 0xFFFFFFFFL;
+  }
+
   @Override
   public boolean equals(Object other) {
     if (this == other) return true;
@@ -21,7 +27,7 @@ public final class Coordinates {
 
   @Override
   public int hashCode() {
-    return Objects.hash(x, y);
+    return 31 * x + y;
   }
 
   public int getX() {
@@ -31,4 +37,8 @@ public final class Coordinates {
   public int getY() {
     return y;
   }
+
+  public long pack() {
+    return pack(x, y);
+  }
 }
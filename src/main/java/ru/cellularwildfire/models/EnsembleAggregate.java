@@ -0,0 +1,118 @@
+package ru.cellularwildfire.models;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe aggregate of the last steps of ensemble members on one grid: how many members have
+ * damaged each cell and the damaged area of each member.
+ *
+ * <p>Members are accumulated one by one, so that their histories can be released right after.
+ */
+public final class EnsembleAggregate {
+  private final Grid grid;
+  private final LongIndexMap cellIndices = new LongIndexMap();
+  private long[] cells = new long[16];
+  private int[] damageCounts = new int[16];
+  private int cellCount = 0;
+  private double[] damagedHectares = new double[16];
+  private int memberCount = 0;
+
+  public EnsembleAggregate(Grid grid) {
+    this.grid = grid;
+  }
+
+  public Grid getGrid() {
+    return grid;
+  }
+
+  public synchronized int getMemberCount() {
+    return memberCount;
+  }
+
+  /** Accumulates the last step of a member, coarse cells count for each grid cell they cover. */
+  public synchronized void accumulate(Simulation simulation) {
+    double hectares = 0;
+    for (Cell cell : simulation.getSteps().getLast().getCells()) {
+      if (!cell.getState().isDamaged()) {
+        continue;
+      }
+      Coordinates coordinates = cell.getCoordinates();
+      for (int offsetX = 0; offsetX < cell.getSpan(); offsetX++) {
+        for (int offsetY = 0; offsetY < cell.getSpan(); offsetY++) {
+          countDamage(Coordinates.pack(coordinates.getX() + offsetX, coordinates.getY() + offsetY));
+        }
+      }
+      hectares += grid.estimateCellArea(coordinates, cell.getSpan()) / 10000;
+    }
+    if (memberCount == damagedHectares.length) {
+      damagedHectares = Arrays.copyOf(damagedHectares, 2 * memberCount);
+    }
+    damagedHectares[memberCount++] = hectares;
+  }
+
+  /** Returns the share of members that have damaged the cell. */
+  public synchronized double getBurnProbability(Coordinates coordinates) {
+    int index = cellIndices.get(coordinates.pack());
+    return index == LongIndexMap.NO_INDEX || memberCount == 0
+        ? 0
+        : (double) damageCounts[index] / memberCount;
+  }
+
+  /** Returns the burn probabilities of the bounding box of all cells damaged by any member. */
+  public synchronized Raster getBurnProbabilityRaster() {
+    if (cellCount == 0) {
+      return new Raster(new Coordinates(0, 0), 0, 0, new float[0]);
+    }
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int index = 0; index < cellCount; index++) {
+      Coordinates coordinates = Coordinates.unpack(cells[index]);
+      minX = Math.min(minX, coordinates.getX());
+      minY = Math.min(minY, coordinates.getY());
+      maxX = Math.max(maxX, coordinates.getX());
+      maxY = Math.max(maxY, coordinates.getY());
+    }
+    int width = maxX - minX + 1;
+    int height = maxY - minY + 1;
+    float[] probabilities = new float[width * height];
+    for (int index = 0; index < cellCount; index++) {
+      Coordinates coordinates = Coordinates.unpack(cells[index]);
+      probabilities[(coordinates.getY() - minY) * width + coordinates.getX() - minX] =
+          (float) damageCounts[index] / memberCount;
+    }
+    return new Raster(new Coordinates(minX, minY), width, height, probabilities);
+  }
+
+  /** Returns the damaged hectares of the members in ascending order. */
+  public synchronized double[] getDamagedHectares() {
+    double[] hectares = Arrays.copyOf(damagedHectares, memberCount);
+    Arrays.sort(hectares);
+    return hectares;
+  }
+
+  /** Returns the damaged hectares not exceeded by the share of members, 0.5 is the median. */
+  public double getDamagedHectaresQuantile(double share) {
+    double[] hectares = getDamagedHectares();
+    if (hectares.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(share * hectares.length) - 1;
+    return hectares[Math.max(0, Math.min(hectares.length - 1, index))];
+  }
+
+  private void countDamage(long packedCoordinates) {
+    int index = cellIndices.get(packedCoordinates);
+    if (index == LongIndexMap.NO_INDEX) {
+      if (cellCount == cells.length) {
+        cells = Arrays.copyOf(cells, 2 * cellCount);
+        damageCounts = Arrays.copyOf(damageCounts, 2 * cellCount);
+      }
+      index = cellCount++;
+      cells[index] = packedCoordinates;
+      cellIndices.put(packedCoordinates, index);
+    }
+    damageCounts[index]++;
+  }
+}
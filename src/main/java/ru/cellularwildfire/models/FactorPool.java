@@ -0,0 +1,41 @@
+package ru.cellularwildfire.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canonical cell factors of a simulation addressed by small integer ids.
+ *
+ * <p>Factors are interned by their packed value, so equal factors share an instance and an id and
+ * can be compared by identity. Looking up known factors allocates nothing.
+ */
+public final class FactorPool {
+  private final List<Cell.Factors> factors = new ArrayList<>();
+  private final LongIndexMap ids = new LongIndexMap();
+
+  public int idOf(Weather weather, double elevation, byte forestType) {
+    return idOf(Cell.Factors.pack(weather, elevation, forestType));
+  }
+
+  public int idOf(Cell.Factors cellFactors) {
+    return idOf(cellFactors.pack());
+  }
+
+  private int idOf(long packedFactors) {
+    int id = ids.get(packedFactors);
+    if (id == LongIndexMap.NO_INDEX) {
+      id = factors.size();
+      factors.add(Cell.Factors.unpack(packedFactors));
+      ids.put(packedFactors, id);
+    }
+    return id;
+  }
+
+  public Cell.Factors get(int id) {
+    return factors.get(id);
+  }
+
+  public int size() {
+    return factors.size();
+  }
+}
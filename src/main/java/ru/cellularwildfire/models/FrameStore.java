@@ -0,0 +1,20 @@
+package ru.cellularwildfire.models;
+
+import java.nio.ByteBuffer;
+
+/** Append-only storage of encoded step frames addressed by their order. */
+public interface FrameStore {
+  /** Stores the remaining bytes of the frame and returns its index. */
+  int append(ByteBuffer frame);
+
+  /** Returns a read-only view of the frame bytes. */
+  ByteBuffer read(int index);
+
+  int size();
+
+  /** Returns the number of bytes held by the store. */
+  long countBytes();
+
+  /** Releases the resources of the store, after which it must not be used. */
+  default void release() {}
+}
@@ -44,17 +44,34 @@ public class Grid {
   }
 
   public LatLng pointOf(Coordinates coordinates) {
-    return new LatLng((coordinates.getY() + 0.5) / scale, (coordinates.getX() + 0.5) / scale);
+    return new LatLng(latOf(coordinates.getY()), lngOf(coordinates.getX()));
+  }
+
+  public double latOf(int y) {
+    return (y + 0.5) / scale;
+  }
+
+  public double lngOf(int x) {
+    return (x + 0.5) / scale;
   }
 
   public Coordinates getNeighbor(Coordinates coordinates, int offsetX, int offsetY) {
+    return getNeighbor(coordinates, offsetX, offsetY, 1);
+  }
+
+  /**
+   * Returns the lower corner of the neighbor of the block of {@code span} × {@code span} cells
+   * with the lower corner at the coordinates.
+   */
+  public Coordinates getNeighbor(Coordinates coordinates, int offsetX, int offsetY, int span) {
     assert -1 <= offsetX && offsetX <= 1 && -1 <= offsetY && offsetY <= 1;
-    int y = coordinates.getY() + offsetY;
+    int shiftX = offsetX * span;
+    int y = coordinates.getY() + offsetY * span;
     if (y < -90 * scale || 90 * scale <= y) {
-      y = (y < 0 ? -1 : 1) * 180 * scale - y - 1;
-      offsetX = 180 * scale - offsetX;
+      y = (y < 0 ? -1 : 1) * 180 * scale - y - span;
+      shiftX = 180 * scale - shiftX;
     }
-    int x = coordinates.getX() + offsetX;
+    int x = coordinates.getX() + shiftX;
     if (x < -180 * scale) {
       x += 360 * scale;
     }
@@ -64,8 +81,26 @@ public class Grid {
     return new Coordinates(x, y);
   }
 
+  /** Returns the lower corner of the aligned block of {@code span} × {@code span} cells. */
+  public Coordinates getBlock(Coordinates cellCoordinates, int span) {
+    return new Coordinates(
+        Math.floorDiv(cellCoordinates.getX(), span) * span,
+        Math.floorDiv(cellCoordinates.getY(), span) * span);
+  }
+
   public double estimateCellArea(Coordinates cellCoordinates) {
-    double lat = pointOf(cellCoordinates).lat;
-    return cellHeight * cellHeight * Math.cos(Math.toRadians(lat));
+    return estimateCellArea(cellCoordinates, 1);
+  }
+
+  /**
+   * Estimates the area of the block of {@code span} × {@code span} cells with the lower corner at
+   * the coordinates, which narrows row by row towards the poles.
+   */
+  public double estimateCellArea(Coordinates cellCoordinates, int span) {
+    double rowCosSum = 0;
+    for (int row = 0; row < span; row++) {
+      rowCosSum += Math.cos(Math.toRadians(latOf(cellCoordinates.getY() + row)));
+    }
+    return cellHeight * cellHeight * span * rowCosSum;
   }
 }
@@ -0,0 +1,35 @@
+package ru.cellularwildfire.models;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Frame store keeping every frame in a heap byte array. */
+public final class HeapFrameStore implements FrameStore {
+  private final List<byte[]> frames = new ArrayList<>();
+  private long byteCount = 0;
+
+  @Override
+  public int append(ByteBuffer frame) {
+    byte[] bytes = new byte[frame.remaining()];
+    frame.get(bytes);
+    frames.add(bytes);
+    byteCount += bytes.length;
+    return frames.size() - 1;
+  }
+
+  @Override
+  public ByteBuffer read(int index) {
+    return ByteBuffer.wrap(frames.get(index)).asReadOnlyBuffer();
+  }
+
+  @Override
+  public int size() {
+    return frames.size();
+  }
+
+  @Override
+  public long countBytes() {
+    return byteCount;
+  }
+}
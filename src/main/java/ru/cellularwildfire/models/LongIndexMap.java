@@ -0,0 +1,100 @@
+package ru.cellularwildfire.models;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys such as packed {@link Coordinates} to non-negative indices.
+ *
+ * <p>Keys and values are kept in primitive arrays, so lookups neither box nor allocate. Clearing
+ * keeps the capacity, which lets a map be reused for tables of similar size.
+ */
+public final class LongIndexMap {
+  public static final int NO_INDEX = -1;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private int[] indices;
+  private int size = 0;
+
+  public LongIndexMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public LongIndexMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, 2 * expectedSize - 1)) << 1;
+    keys = new long[capacity];
+    indices = new int[capacity];
+    Arrays.fill(indices, NO_INDEX);
+  }
+
+  private LongIndexMap(LongIndexMap origin) {
+    keys = origin.keys.clone();
+    indices = origin.indices.clone();
+    size = origin.size;
+  }
+
+  private static int mix(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ hash >>> 32);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public LongIndexMap copy() {
+    return new LongIndexMap(this);
+  }
+
+  public int get(long key) {
+    int mask = keys.length - 1;
+    for (int position = mix(key) & mask; ; position = position + 1 & mask) {
+      if (indices[position] == NO_INDEX) {
+        return NO_INDEX;
+      }
+      if (keys[position] == key) {
+        return indices[position];
+      }
+    }
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != NO_INDEX;
+  }
+
+  /** Maps the key to the non-negative index replacing the previous one. */
+  public void put(long key, int index) {
+    if (2 * (size + 1) > keys.length) {
+      resize(2 * keys.length);
+    }
+    int mask = keys.length - 1;
+    int position = mix(key) & mask;
+    while (indices[position] != NO_INDEX && keys[position] != key) {
+      position = position + 1 & mask;
+    }
+    if (indices[position] == NO_INDEX) {
+      size++;
+    }
+    keys[position] = key;
+    indices[position] = index;
+  }
+
+  public void clear() {
+    Arrays.fill(indices, NO_INDEX);
+    size = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    int[] oldIndices = indices;
+    keys = new long[capacity];
+    indices = new int[capacity];
+    Arrays.fill(indices, NO_INDEX);
+    size = 0;
+    for (int position = 0; position < oldKeys.length; position++) {
+      if (oldIndices[position] != NO_INDEX) {
+        put(oldKeys[position], oldIndices[position]);
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package ru.cellularwildfire.models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Frame store keeping frames in a memory-mapped file of the directory, outside the heap.
+ *
+ * <p>The file is mapped in blocks that frames are appended to, and frames are read as views of the
+ * mapped blocks without copying. Mapped pages are written back by the operating system, so cold
+ * frames leave physical memory under pressure. The file is deleted on release.
+ */
+public final class MappedFrameStore implements FrameStore {
+  private static final int BLOCK_SIZE = 8 << 20;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final List<MappedByteBuffer> blocks = new ArrayList<>();
+  private long mappedBytes = 0;
+  private int[] frameBlocks = new int[64];
+  private int[] frameOffsets = new int[64];
+  private int[] frameLengths = new int[64];
+  private int size = 0;
+  private long byteCount = 0;
+
+  public MappedFrameStore(Path directory) {
+    try {
+      Files.createDirectories(directory);
+      file = Files.createTempFile(directory, "steps-", ".frames");
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @Override
+  public int append(ByteBuffer frame) {
+    int length = frame.remaining();
+    MappedByteBuffer block = blocks.isEmpty() ? null : blocks.getLast();
+    if (block == null || block.remaining() < length) {
+      block = mapBlock(Math.max(BLOCK_SIZE, length));
+    }
+    if (size == frameBlocks.length) {
+      frameBlocks = Arrays.copyOf(frameBlocks, 2 * size);
+      frameOffsets = Arrays.copyOf(frameOffsets, 2 * size);
+      frameLengths = Arrays.copyOf(frameLengths, 2 * size);
+    }
+    frameBlocks[size] = blocks.size() - 1;
+    frameOffsets[size] = block.position();
+    frameLengths[size] = length;
+    block.put(frame);
+    byteCount += length;
+    return size++;
+  }
+
+  @Override
+  public ByteBuffer read(int index) {
+    return blocks
+        .get(frameBlocks[index])
+        .slice(frameOffsets[index], frameLengths[index])
+        .asReadOnlyBuffer();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long countBytes() {
+    return byteCount;
+  }
+
+  /** Closes and deletes the file, while the mapped blocks are unmapped once unreachable. */
+  @Override
+  public void release() {
+    try {
+      channel.close();
+      Files.deleteIfExists(file);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private MappedByteBuffer mapBlock(int blockSize) {
+    try {
+      MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_WRITE, mappedBytes, blockSize);
+      blocks.add(block);
+      mappedBytes += blockSize;
+      return block;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+}
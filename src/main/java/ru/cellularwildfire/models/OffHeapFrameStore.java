@@ -0,0 +1,74 @@
+package ru.cellularwildfire.models;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Frame store keeping frames in off-heap memory segments that the garbage collector does not scan.
+ *
+ * <p>Segments are allocated in blocks by an arena of the store and are freed at once on release,
+ * after which views of the frames can no longer be read. The foreign memory API is a preview in
+ * Java 21, so the class is built with the {@code preview} Maven profile only.
+ */
+public final class OffHeapFrameStore implements FrameStore {
+  private static final long BLOCK_SIZE = 8 << 20;
+
+  private final Arena arena = Arena.ofShared();
+  private final List<MemorySegment> blocks = new ArrayList<>();
+  private long blockPosition = 0;
+  private int[] frameBlocks = new int[64];
+  private long[] frameOffsets = new long[64];
+  private int[] frameLengths = new int[64];
+  private int size = 0;
+  private long byteCount = 0;
+
+  @Override
+  public int append(ByteBuffer frame) {
+    int length = frame.remaining();
+    if (blocks.isEmpty() || blocks.getLast().byteSize() - blockPosition < length) {
+      blocks.add(arena.allocate(Math.max(BLOCK_SIZE, length)));
+      blockPosition = 0;
+    }
+    if (size == frameBlocks.length) {
+      frameBlocks = Arrays.copyOf(frameBlocks, 2 * size);
+      frameOffsets = Arrays.copyOf(frameOffsets, 2 * size);
+      frameLengths = Arrays.copyOf(frameLengths, 2 * size);
+    }
+    frameBlocks[size] = blocks.size() - 1;
+    frameOffsets[size] = blockPosition;
+    frameLengths[size] = length;
+    blocks.getLast().asSlice(blockPosition, length).copyFrom(MemorySegment.ofBuffer(frame));
+    blockPosition += length;
+    byteCount += length;
+    return size++;
+  }
+
+  @Override
+  public ByteBuffer read(int index) {
+    return blocks
+        .get(frameBlocks[index])
+        .asSlice(frameOffsets[index], frameLengths[index])
+        .asByteBuffer()
+        .asReadOnlyBuffer();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long countBytes() {
+    return byteCount;
+  }
+
+  /** Frees the segments of the store. */
+  @Override
+  public void release() {
+    arena.close();
+  }
+}
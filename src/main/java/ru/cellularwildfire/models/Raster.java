@@ -0,0 +1,36 @@
+package ru.cellularwildfire.models;
+
+/** Row-major raster of cell values, rows go up from the origin in the lower left corner. */
+public final class Raster {
+  private final Coordinates origin;
+  private final int width;
+  private final int height;
+  private final float[] values;
+
+  public Raster(Coordinates origin, int width, int height, float[] values) {
+    this.origin = origin;
+    this.width = width;
+    this.height = height;
+    this.values = values;
+  }
+
+  public Coordinates getOrigin() {
+    return origin;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public float getValue(int x, int y) {
+    return values[y * width + x];
+  }
+
+  public float[] getValues() {
+    return values;
+  }
+}
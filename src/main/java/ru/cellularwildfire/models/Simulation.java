@@ -5,31 +5,74 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class Simulation {
   private final String id = UUID.randomUUID().toString();
-  private final List<Step> steps = new ArrayList<>();
+  private final ReentrantLock lock = new ReentrantLock();
   private final MarkedGrid grid;
   private final Timeline timeline;
+  private final CellLayout layout = new CellLayout();
+  private final FactorPool factorPool = new FactorPool();
+  private final StepHistory steps;
+  private final LongIndexMap draftCellIndex = new LongIndexMap();
+  private final BurnedArea burnedArea = new BurnedArea();
+  private volatile boolean released = false;
 
   public Simulation(MarkedGrid grid, Timeline timeline) {
+    this(grid, timeline, new HeapFrameStore());
+  }
+
+  /** Creates a simulation whose step history is encoded into the frame store. */
+  public Simulation(MarkedGrid grid, Timeline timeline, FrameStore frameStore) {
     this.grid = grid;
     this.timeline = timeline;
+    this.steps = new StepHistory(lock, layout, factorPool, frameStore);
   }
 
   public String getId() {
     return id;
   }
 
+  /**
+   * Returns the lock steps are computed and read under, which virtual threads wait for without
+   * pinning their carrier threads.
+   */
+  @JsonIgnore
+  public ReentrantLock getLock() {
+    return lock;
+  }
+
   public boolean hasStep(int step) {
     return step < steps.size();
   }
 
-  public List<Step> getSteps() {
+  /**
+   * Checks whether the step at the tick no longer changes, which it does once it is final or
+   * followed by another step, so that values derived from it may be cached. The last step is
+   * marked final in place if the simulation fails to progress further.
+   */
+  public boolean isImmutableStep(int tick, Step step) {
+    return step.isFinal() || tick + 1 < steps.size();
+  }
+
+  public StepHistory getSteps() {
     return steps;
   }
 
+  /** Releases the resources of the step history once the simulation is dropped. */
+  public void release() {
+    released = true;
+    steps.release();
+  }
+
+  @JsonIgnore
+  public boolean isReleased() {
+    return released;
+  }
+
   public MarkedGrid getGrid() {
     return grid;
   }
@@ -38,6 +81,28 @@ public final class Simulation {
     return timeline;
   }
 
+  @JsonIgnore
+  public CellLayout getLayout() {
+    return layout;
+  }
+
+  @JsonIgnore
+  public FactorPool getFactorPool() {
+    return factorPool;
+  }
+
+  /** Returns the cells the object engine has retired. */
+  @JsonIgnore
+  public BurnedArea getBurnedArea() {
+    return burnedArea;
+  }
+
+  /** Returns the index of draft step cells by packed coordinates reused between steps. */
+  @JsonIgnore
+  public LongIndexMap getDraftCellIndex() {
+    return draftCellIndex;
+  }
+
   public static final class MarkedGrid extends Grid {
     private final Coordinates startCoordinates;
 
@@ -91,8 +156,40 @@ public final class Simulation {
   }
 
   public static final class Step {
-    private final List<Cell> cells = new ArrayList<>();
+    private final List<Cell> cells;
+    private final StepColumns columns;
+    private final BurnedArea burnedArea;
+    private final FactorPool factorPool;
+    private final int retiredCount;
     private boolean isFinal = false;
+    private Grid grid = null;
+    private int renderCellBudget = 0;
+
+    public Step() {
+      this.cells = new ArrayList<>();
+      this.columns = null;
+      this.burnedArea = null;
+      this.factorPool = null;
+      this.retiredCount = 0;
+    }
+
+    /** Creates a step that also renders the cells retired to the burned area so far. */
+    public Step(BurnedArea burnedArea, FactorPool factorPool) {
+      this.cells = new ArrayList<>();
+      this.columns = null;
+      this.burnedArea = burnedArea;
+      this.factorPool = factorPool;
+      this.retiredCount = burnedArea.size();
+    }
+
+    /** Creates a step whose cells are materialized from the columns on demand. */
+    public Step(StepColumns columns) {
+      this.cells = null;
+      this.columns = columns;
+      this.burnedArea = null;
+      this.factorPool = null;
+      this.retiredCount = 0;
+    }
 
     public void markAsFinal() {
       isFinal = true;
@@ -102,8 +199,63 @@ public final class Simulation {
       return isFinal;
     }
 
+    /** Makes the step merge burned-out cells into coarse cells while they exceed the budget. */
+    void renderWithin(Grid grid, int renderCellBudget) {
+      this.grid = grid;
+      this.renderCellBudget = renderCellBudget;
+    }
+
+    /** Returns the columns if the cells of the step are exactly the slots of the columns. */
+    Optional<StepColumns> getRenderedColumns() {
+      return columns != null && (renderCellBudget == 0 || columns.size() <= renderCellBudget)
+          ? Optional.of(columns)
+          : Optional.empty();
+    }
+
+    /**
+     * Returns all cells of the step, retired cells included, with burned-out cells merged into
+     * coarse cells if the step is rendered within a cell budget.
+     */
     public List<Cell> getCells() {
+      List<Cell> cells = materializeCells();
+      return renderCellBudget == 0 ? cells : CoarseBlocks.merge(cells, grid, renderCellBudget);
+    }
+
+    private List<Cell> materializeCells() {
+      if (columns != null) {
+        return columns.materialize();
+      }
+      if (retiredCount == 0) {
+        return cells;
+      }
+      List<Cell> renderedCells = new ArrayList<>(cells);
+      renderedCells.addAll(burnedArea.materialize(retiredCount, factorPool));
+      return renderedCells;
+    }
+
+    /** Returns the cells the object engine processes, which exclude retired cells. */
+    @JsonIgnore
+    public List<Cell> getLiveCells() {
       return cells;
     }
+
+    @JsonIgnore
+    public Optional<StepColumns> getColumns() {
+      return Optional.ofNullable(columns);
+    }
+
+    public int countCells() {
+      return columns == null ? cells.size() + retiredCount : columns.size();
+    }
+
+    public int countBurningCells() {
+      return columns == null
+          ? (int) cells.stream().filter(Cell::isBurning).count()
+          : columns.countBurningCells();
+    }
+
+    public boolean hasBurningCells() {
+      return columns == null ? cells.stream().anyMatch(Cell::isBurning) : columns.hasBurningCells();
+    }
   }
 }
@@ -0,0 +1,298 @@
+package ru.cellularwildfire.models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cell states of a simulation step kept in primitive columns indexed by {@link CellLayout} slots.
+ *
+ * <p>Columns are split into chunks that are shared with the step they were copied from until a
+ * slot of the chunk is written, so cells outside the active front cost nothing per step.
+ */
+public final class StepColumns {
+  private static final int CHUNK_SHIFT = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final int[] NO_SLOTS = new int[0];
+  private static final VarHandle HEAT_ELEMENT = MethodHandles.arrayElementVarHandle(float[].class);
+
+  private final CellLayout liveLayout;
+  private final FactorPool factorPool;
+  private CellLayout layout;
+  private float[][] heats;
+  private float[][] cumulativeCombustionRates;
+  private int[][] factorIds;
+  private boolean[] ownedChunks;
+  private int size;
+  private int[] activeSlots = NO_SLOTS;
+
+  public StepColumns(CellLayout layout, FactorPool factorPool) {
+    this.liveLayout = layout;
+    this.layout = layout;
+    this.factorPool = factorPool;
+    this.heats = new float[0][];
+    this.cumulativeCombustionRates = new float[0][];
+    this.factorIds = new int[0][];
+    this.ownedChunks = new boolean[0];
+    this.size = 0;
+  }
+
+  private StepColumns(StepColumns origin) {
+    this.liveLayout = origin.liveLayout;
+    this.layout = origin.liveLayout;
+    this.factorPool = origin.factorPool;
+    this.heats = origin.heats.clone();
+    this.cumulativeCombustionRates = origin.cumulativeCombustionRates.clone();
+    this.factorIds = origin.factorIds.clone();
+    this.ownedChunks = new boolean[origin.ownedChunks.length];
+    this.size = origin.size;
+    this.activeSlots = origin.activeSlots;
+  }
+
+  /** Creates a copy that shares column chunks with this step until they are written. */
+  public StepColumns copy() {
+    return new StepColumns(this);
+  }
+
+  public CellLayout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Makes the columns read the layout through a snapshot of its current slots, so that a published
+   * step is not affected by slots added to the layout later. Copies keep adding to the layout.
+   */
+  public void freezeLayout() {
+    layout = liveLayout.snapshot();
+  }
+
+  public FactorPool getFactorPool() {
+    return factorPool;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Estimates the memory the columns take if none of their chunks are shared. */
+  public long countBytes() {
+    long chunkBytes = (long) CHUNK_SIZE * (2 * Float.BYTES + Integer.BYTES);
+    return heats.length * chunkBytes + (long) activeSlots.length * Integer.BYTES;
+  }
+
+  /**
+   * Returns the ascending slots of the active front.
+   *
+   * <p>A draft step holds the slots to process; a refined step holds the slots that stay active in
+   * the next step. Other slots are frozen and keep their state.
+   */
+  public int[] getActiveSlots() {
+    return activeSlots;
+  }
+
+  public void setActiveSlots(int[] activeSlots) {
+    this.activeSlots = activeSlots;
+  }
+
+  /** Appends the cell of the next layout slot. */
+  public int addCell(double heat, int factorId) {
+    int slot = size;
+    int chunk = slot >> CHUNK_SHIFT;
+    if (chunk == heats.length) {
+      heats = Arrays.copyOf(heats, chunk + 1);
+      cumulativeCombustionRates = Arrays.copyOf(cumulativeCombustionRates, chunk + 1);
+      factorIds = Arrays.copyOf(factorIds, chunk + 1);
+      ownedChunks = Arrays.copyOf(ownedChunks, chunk + 1);
+      heats[chunk] = new float[CHUNK_SIZE];
+      cumulativeCombustionRates[chunk] = new float[CHUNK_SIZE];
+      factorIds[chunk] = new int[CHUNK_SIZE];
+      ownedChunks[chunk] = true;
+    }
+    size++;
+    setHeat(slot, heat);
+    setFactorId(slot, factorId);
+    return slot;
+  }
+
+  /**
+   * Makes the chunk of the slot private to this step.
+   *
+   * <p>Slots written concurrently must be prepared in advance since chunk copying is not
+   * thread-safe.
+   */
+  public void prepareForWriting(int slot) {
+    int chunk = slot >> CHUNK_SHIFT;
+    if (!ownedChunks[chunk]) {
+      heats[chunk] = heats[chunk].clone();
+      cumulativeCombustionRates[chunk] = cumulativeCombustionRates[chunk].clone();
+      factorIds[chunk] = factorIds[chunk].clone();
+      ownedChunks[chunk] = true;
+    }
+  }
+
+  public double getHeat(int slot) {
+    return heats[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+  }
+
+  public void setHeat(int slot, double heat) {
+    prepareForWriting(slot);
+    heats[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = (float) heat;
+  }
+
+  /**
+   * Adds the heat with the rounding of {@link #setHeat} in a compare-and-set loop, so concurrent
+   * additions to a prepared slot are not lost.
+   */
+  public void addHeatAtomically(int slot, double heat) {
+    float[] chunk = heats[slot >> CHUNK_SHIFT];
+    int index = slot & CHUNK_MASK;
+    float current = (float) HEAT_ELEMENT.getVolatile(chunk, index);
+    while (!HEAT_ELEMENT.compareAndSet(chunk, index, current, (float) (current + heat))) {
+      current = (float) HEAT_ELEMENT.getVolatile(chunk, index);
+    }
+  }
+
+  public float getCumulativeCombustionRate(int slot) {
+    return cumulativeCombustionRates[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+  }
+
+  public void accountCombustionStep(int slot, double combustionRate) {
+    prepareForWriting(slot);
+    cumulativeCombustionRates[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] += (float) combustionRate;
+  }
+
+  public void setCumulativeCombustionRate(int slot, float cumulativeCombustionRate) {
+    prepareForWriting(slot);
+    cumulativeCombustionRates[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = cumulativeCombustionRate;
+  }
+
+  public double getFuel(int slot) {
+    return Cell.State.calculateFuel(
+        layout.getInitialFuel(slot), getCumulativeCombustionRate(slot));
+  }
+
+  public int getFactorId(int slot) {
+    return factorIds[slot >> CHUNK_SHIFT][slot & CHUNK_MASK];
+  }
+
+  public void setFactorId(int slot, int factorId) {
+    prepareForWriting(slot);
+    factorIds[slot >> CHUNK_SHIFT][slot & CHUNK_MASK] = factorId;
+  }
+
+  public Cell.Factors getFactors(int slot) {
+    return factorPool.get(getFactorId(slot));
+  }
+
+  public boolean isBurning(int slot) {
+    // Heat rules out most slots of the active front without reading the layout.
+    if (getHeat(slot) < Cell.IGNITION_TEMPERATURE) {
+      return false;
+    }
+    return Cell.isBurning(
+        layout.getInitialFuel(slot),
+        getCumulativeCombustionRate(slot),
+        getHeat(slot),
+        getFactors(slot));
+  }
+
+  /**
+   * Returns the ascending slots whose state differs from the origin step, added slots included.
+   *
+   * <p>Chunks this step still shares with the origin are skipped without comparison, so the cost
+   * is proportional to the written chunks if this step is a {@link #copy()} of the origin.
+   */
+  public int[] findChangedSlots(StepColumns origin) {
+    int count = 0;
+    int[] changedSlots = new int[Math.max(16, size - origin.size)];
+    for (int chunk = 0; chunk < heats.length; chunk++) {
+      boolean isShared =
+          chunk < origin.heats.length
+              && heats[chunk] == origin.heats[chunk]
+              && cumulativeCombustionRates[chunk] == origin.cumulativeCombustionRates[chunk]
+              && factorIds[chunk] == origin.factorIds[chunk];
+      if (isShared) {
+        continue;
+      }
+      int end = Math.min(size, (chunk + 1) << CHUNK_SHIFT);
+      for (int slot = chunk << CHUNK_SHIFT; slot < end; slot++) {
+        if (slot < origin.size
+            && Double.compare(getHeat(slot), origin.getHeat(slot)) == 0
+            && Float.compare(
+                    getCumulativeCombustionRate(slot), origin.getCumulativeCombustionRate(slot))
+                == 0
+            && getFactorId(slot) == origin.getFactorId(slot)) {
+          continue;
+        }
+        if (count == changedSlots.length) {
+          changedSlots = Arrays.copyOf(changedSlots, 2 * count);
+        }
+        changedSlots[count++] = slot;
+      }
+    }
+    return Arrays.copyOf(changedSlots, count);
+  }
+
+  /** Returns the ascending burning slots, which always belong to the active front. */
+  public int[] findBurningSlots() {
+    int count = 0;
+    int[] burningSlots = new int[activeSlots.length];
+    for (int slot : activeSlots) {
+      if (isBurning(slot)) {
+        burningSlots[count++] = slot;
+      }
+    }
+    return Arrays.copyOf(burningSlots, count);
+  }
+
+  public int countBurningCells() {
+    int count = 0;
+    for (int slot : activeSlots) {
+      if (isBurning(slot)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public boolean hasBurningCells() {
+    for (int slot : activeSlots) {
+      if (isBurning(slot)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Creates cell objects with neighbor links for the slots of the step. */
+  public List<Cell> materialize() {
+    Cell[] cells = new Cell[size];
+    for (int slot = 0; slot < size; slot++) {
+      cells[slot] = materialize(slot);
+    }
+    for (int slot = 0; slot < size; slot++) {
+      for (int offsetX = -1; offsetX <= 1; offsetX++) {
+        for (int offsetY = -1; offsetY <= 1; offsetY++) {
+          int neighborSlot = layout.getNeighbor(slot, offsetX, offsetY);
+          if (offsetX == 0 && offsetY == 0 || neighborSlot == CellLayout.NO_SLOT) {
+            continue;
+          }
+          if (neighborSlot < size) {
+            cells[slot].setNeighbor(offsetX, offsetY, cells[neighborSlot]);
+          }
+        }
+      }
+    }
+    return List.of(cells);
+  }
+
+  /** Creates a cell object of the slot without neighbor links. */
+  public Cell materialize(int slot) {
+    Cell.State state =
+        new Cell.State(
+            layout.getInitialFuel(slot), getHeat(slot), getCumulativeCombustionRate(slot));
+    return new Cell(layout.getCoordinates(slot), state, getFactors(slot));
+  }
+}
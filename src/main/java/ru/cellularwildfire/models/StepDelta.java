@@ -0,0 +1,53 @@
+package ru.cellularwildfire.models;
+
+import java.util.List;
+
+/**
+ * Cells of a step that changed for a client since the steps it already has, see {@link
+ * StepDeltaEncoder}, or every cell of the step if the delta is full. Cells are identified by their
+ * coordinates, and removed coordinates are those of cells merged into coarse cells.
+ */
+public final class StepDelta {
+  private final int tick;
+  private final boolean isFull;
+  private final boolean isFinal;
+  private final List<Cell> cells;
+  private final List<Coordinates> removedCoordinates;
+
+  StepDelta(
+      int tick,
+      boolean isFull,
+      boolean isFinal,
+      List<Cell> cells,
+      List<Coordinates> removedCoordinates) {
+    this.tick = tick;
+    this.isFull = isFull;
+    this.isFinal = isFinal;
+    this.cells = cells;
+    this.removedCoordinates = removedCoordinates;
+  }
+
+  public static StepDelta full(int tick, Simulation.Step step) {
+    return new StepDelta(tick, true, step.isFinal(), step.getCells(), List.of());
+  }
+
+  public int getTick() {
+    return tick;
+  }
+
+  public boolean isFull() {
+    return isFull;
+  }
+
+  public boolean isFinal() {
+    return isFinal;
+  }
+
+  public List<Cell> getCells() {
+    return cells;
+  }
+
+  public List<Coordinates> getRemovedCoordinates() {
+    return removedCoordinates;
+  }
+}
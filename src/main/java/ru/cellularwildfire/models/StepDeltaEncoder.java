@@ -0,0 +1,117 @@
+package ru.cellularwildfire.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Encodes consecutive steps of a simulation as deltas against the cells a client has.
+ *
+ * <p>The encoder keeps the cells as the client has them, starting from a base step. A cell is sent
+ * if it appeared, crossed the burning or damaged thresholds, changed factors or span, or changed
+ * heat or fuel by at least the tolerances since it was sent, so the cells of the client differ from
+ * the step by less than the tolerances. Steps of columns that follow steps of columns are compared
+ * only at the slots the steps do not share.
+ */
+public final class StepDeltaEncoder {
+  public static final double HEAT_TOLERANCE = 5;
+  public static final double FUEL_TOLERANCE = 0.001;
+  private static final int DAMAGED_FLAG = 1;
+  private static final int BURNING_FLAG = 2;
+
+  private final LongIndexMap cellIndices = new LongIndexMap();
+  private long[] coordinates = new long[16];
+  private float[] heats = new float[16];
+  private float[] fuels = new float[16];
+  private long[] factors = new long[16];
+  private int[] spans = new int[16];
+  private byte[] flags = new byte[16];
+  private boolean[] isPresent = new boolean[16];
+  private int cellCount = 0;
+  private Simulation.Step previousStep;
+
+  public StepDeltaEncoder(Simulation.Step baseStep) {
+    for (Cell cell : baseStep.getCells()) {
+      update(cellIndices.get(cell.getCoordinates().pack()), cell);
+    }
+    previousStep = baseStep;
+  }
+
+  private static int flagsOf(Cell cell) {
+    return (cell.getState().isDamaged() ? DAMAGED_FLAG : 0)
+        | (cell.isBurning() ? BURNING_FLAG : 0);
+  }
+
+  public StepDelta encode(int tick, Simulation.Step step) {
+    List<Cell> changedCells = new ArrayList<>();
+    List<Coordinates> removedCoordinates = new ArrayList<>();
+    Optional<StepColumns> previousColumns = previousStep.getRenderedColumns();
+    Optional<StepColumns> columns = step.getRenderedColumns();
+    if (previousColumns.isPresent() && columns.isPresent()) {
+      // Slots are kept by later steps, so no cell disappears.
+      for (int slot : columns.get().findChangedSlots(previousColumns.get())) {
+        Cell cell = columns.get().materialize(slot);
+        int index = cellIndices.get(cell.getCoordinates().pack());
+        if (isChanged(index, cell)) {
+          changedCells.add(cell);
+          update(index, cell);
+        }
+      }
+    } else {
+      boolean[] isKept = new boolean[cellCount];
+      for (Cell cell : step.getCells()) {
+        int index = cellIndices.get(cell.getCoordinates().pack());
+        if (index != LongIndexMap.NO_INDEX) {
+          isKept[index] = true;
+        }
+        if (isChanged(index, cell)) {
+          changedCells.add(cell);
+          update(index, cell);
+        }
+      }
+      for (int index = 0; index < isKept.length; index++) {
+        if (isPresent[index] && !isKept[index]) {
+          isPresent[index] = false;
+          removedCoordinates.add(Coordinates.unpack(coordinates[index]));
+        }
+      }
+    }
+    previousStep = step;
+    return new StepDelta(tick, false, step.isFinal(), changedCells, removedCoordinates);
+  }
+
+  private boolean isChanged(int index, Cell cell) {
+    return index == LongIndexMap.NO_INDEX
+        || !isPresent[index]
+        || spans[index] != cell.getSpan()
+        || factors[index] != cell.getFactors().pack()
+        || flags[index] != flagsOf(cell)
+        || HEAT_TOLERANCE <= Math.abs(heats[index] - cell.getState().getHeat())
+        || FUEL_TOLERANCE <= Math.abs(fuels[index] - cell.getState().getFuel());
+  }
+
+  private void update(int index, Cell cell) {
+    if (index == LongIndexMap.NO_INDEX) {
+      if (cellCount == coordinates.length) {
+        int capacity = 2 * cellCount;
+        coordinates = Arrays.copyOf(coordinates, capacity);
+        heats = Arrays.copyOf(heats, capacity);
+        fuels = Arrays.copyOf(fuels, capacity);
+        factors = Arrays.copyOf(factors, capacity);
+        spans = Arrays.copyOf(spans, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        isPresent = Arrays.copyOf(isPresent, capacity);
+      }
+      index = cellCount++;
+      coordinates[index] = cell.getCoordinates().pack();
+      cellIndices.put(coordinates[index], index);
+    }
+    heats[index] = (float) cell.getState().getHeat();
+    fuels[index] = (float) cell.getState().getFuel();
+    factors[index] = cell.getFactors().pack();
+    spans[index] = cell.getSpan();
+    flags[index] = (byte) flagsOf(cell);
+    isPresent[index] = true;
+  }
+}
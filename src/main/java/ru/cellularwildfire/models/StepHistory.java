@@ -0,0 +1,429 @@
+package ru.cellularwildfire.models;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Steps of a simulation in which columnar steps are kept as encoded frames.
+ *
+ * <p>Keyframes hold all cells. By default every {@value #KEYFRAME_INTERVAL}th frame is a keyframe
+ * and the other frames hold only the fields of cells changed since the previous step, with slots
+ * stored as varint gaps. With checkpoints the other frames hold only the factor ids refreshed by
+ * the draft step, and the step is recomputed from the previous one by a {@link Replayer}; the
+ * keyframe interval then grows so that the frames, the decoded steps and the live step fit into the
+ * memory budget.
+ *
+ * <p>A step is decoded from the closest preceding keyframe or recently decoded step, which are
+ * kept in a bounded LRU cache. The last step stays live since the next draft step is copied from
+ * it and only it can be marked as final. Steps without columns are kept as they are.
+ *
+ * <p>Once released, the frames are freed under the lock and only the live step and steps without
+ * columns can still be read, so readers that may outlive the simulation use {@link #findStep}.
+ */
+public final class StepHistory extends AbstractList<Simulation.Step> {
+  private static final int KEYFRAME_INTERVAL = 32;
+  private static final int MIN_CHECKPOINT_INTERVAL = 4;
+  private static final int MAX_CHECKPOINT_INTERVAL = 128;
+  private static final int DECODED_STEP_CAPACITY = 16;
+  private static final int MAX_VARINT_BYTES = 5;
+  private static final int FRAME_HEADER_BYTES = 3 * MAX_VARINT_BYTES;
+  private static final int MAX_ENTRY_BYTES = 1 + 2 * MAX_VARINT_BYTES + 2 * Float.BYTES;
+  private static final int HEAT_FIELD = 1;
+  private static final int COMBUSTION_FIELD = 2;
+  private static final int FACTOR_FIELD = 4;
+
+  private final Lock lock;
+  private final CellLayout layout;
+  private final FactorPool factorPool;
+  private final FrameStore frames;
+  private final List<Simulation.Step> plainSteps = new ArrayList<>();
+  private final LinkedHashMap<Integer, StepColumns> decodedSteps =
+      new LinkedHashMap<>(DECODED_STEP_CAPACITY, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, StepColumns> eldest) {
+          return size() > DECODED_STEP_CAPACITY;
+        }
+      };
+  private int[] keyframeTicks = new int[16];
+  private int keyframeCount = 0;
+  private int keyframeInterval = KEYFRAME_INTERVAL;
+  private Replayer replayer = null;
+  private long memoryBudget = 0;
+  private int limitTicks = 0;
+  private Simulation.Step lastStep = null;
+  private Grid grid = null;
+  private int renderCellBudget = 0;
+  private boolean released = false;
+
+  /** Creates a history guarded by the lock, which replayed steps are recomputed under as well. */
+  public StepHistory(Lock lock, CellLayout layout, FactorPool factorPool, FrameStore frames) {
+    this.lock = lock;
+    this.layout = layout;
+    this.factorPool = factorPool;
+    this.frames = frames;
+  }
+
+  /**
+   * Makes the history keep checkpoints and recompute the steps between them.
+   *
+   * <p>Must be called before the first step is added.
+   */
+  public void useCheckpoints(Replayer replayer, long memoryBudget, int limitTicks) {
+    lock.lock();
+    try {
+      if (size() != 0) {
+        throw new IllegalStateException("Checkpoints must be enabled in an empty history");
+      }
+      this.replayer = replayer;
+      this.memoryBudget = memoryBudget;
+      this.limitTicks = limitTicks;
+      this.keyframeInterval = MIN_CHECKPOINT_INTERVAL;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Makes the steps of the history render burned-out cells coarser to fit the cell budget. */
+  public void useRenderCellBudget(Grid grid, int renderCellBudget) {
+    lock.lock();
+    try {
+      this.grid = grid;
+      this.renderCellBudget = renderCellBudget;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return frames.size() + plainSteps.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Simulation.Step get(int tick) {
+    lock.lock();
+    try {
+      if (tick < 0 || size() <= tick) {
+        throw new IndexOutOfBoundsException(tick);
+      }
+      if (frames.size() == 0) {
+        return plainSteps.get(tick);
+      }
+      if (tick == frames.size() - 1) {
+        return lastStep;
+      }
+      if (released) {
+        throw new IllegalStateException("Frames of a released history cannot be read");
+      }
+      int keyframeIndex = Arrays.binarySearch(keyframeTicks, 0, keyframeCount, tick);
+      int keyframeTick = keyframeTicks[keyframeIndex < 0 ? -keyframeIndex - 2 : keyframeIndex];
+      int decodedTick = keyframeTick - 1;
+      StepColumns columns = null;
+      for (Map.Entry<Integer, StepColumns> entry : decodedSteps.entrySet()) {
+        if (decodedTick < entry.getKey() && entry.getKey() <= tick) {
+          decodedTick = entry.getKey();
+          columns = entry.getValue();
+        }
+      }
+      if (columns != null) {
+        decodedSteps.get(decodedTick);
+      }
+      while (decodedTick < tick) {
+        decodedTick++;
+        columns = decodeStep(decodedTick, decodedTick == keyframeTick ? null : columns);
+        columns.freezeLayout();
+        decodedSteps.put(decodedTick, columns);
+      }
+      return withRenderCellBudget(new Simulation.Step(columns));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the step at the tick unless it is not computed yet or the history is released. */
+  public Optional<Simulation.Step> findStep(int tick) {
+    lock.lock();
+    try {
+      if (released || tick < 0 || size() <= tick) {
+        return Optional.empty();
+      }
+      return Optional.of(get(tick));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean add(Simulation.Step step) {
+    lock.lock();
+    try {
+      withRenderCellBudget(step);
+      if (step.getColumns().isEmpty() || !plainSteps.isEmpty()) {
+        if (frames.size() != 0) {
+          throw new IllegalArgumentException("Step without columns in a columnar history");
+        }
+        return plainSteps.add(step);
+      }
+      StepColumns columns = step.getColumns().get();
+      // Readers of the step outside the lock must not see the layout grow with later steps.
+      columns.freezeLayout();
+      int tick = frames.size();
+      boolean isKeyframe =
+          keyframeCount == 0 || keyframeTicks[keyframeCount - 1] + keyframeInterval <= tick;
+      if (isKeyframe) {
+        StepColumns origin = new StepColumns(layout, factorPool);
+        frames.append(encodeFrame(columns, origin, columns.findChangedSlots(origin)));
+        addKeyframeTick(tick, columns);
+      } else {
+        StepColumns origin = lastStep.getColumns().orElseThrow();
+        int[] changedSlots = columns.findChangedSlots(origin);
+        frames.append(
+            replayer == null
+                ? encodeFrame(columns, origin, changedSlots)
+                : encodeReplayFrame(columns, origin, changedSlots));
+      }
+      lastStep = step;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of steps between the last keyframes. */
+  public int getKeyframeInterval() {
+    lock.lock();
+    try {
+      return keyframeInterval;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of bytes held by the encoded frames. */
+  public long countFrameBytes() {
+    lock.lock();
+    try {
+      return frames.countBytes();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void release() {
+    lock.lock();
+    try {
+      released = true;
+      decodedSteps.clear();
+      frames.release();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Simulation.Step withRenderCellBudget(Simulation.Step step) {
+    if (0 < renderCellBudget) {
+      step.renderWithin(grid, renderCellBudget);
+    }
+    return step;
+  }
+
+  private void addKeyframeTick(int tick, StepColumns columns) {
+    if (keyframeCount == keyframeTicks.length) {
+      keyframeTicks = Arrays.copyOf(keyframeTicks, 2 * keyframeCount);
+    }
+    keyframeTicks[keyframeCount++] = tick;
+    if (replayer != null) {
+      // The interval lets the keyframes of the remaining ticks fit into the remaining budget, which
+      // leaves room for the decoded steps and the live step as large as the step of the keyframe.
+      long keyframeBytes = frames.read(tick).remaining();
+      long residentBytes = (DECODED_STEP_CAPACITY + 1) * columns.countBytes();
+      long remainingBytes =
+          Math.max(keyframeBytes, memoryBudget - frames.countBytes() - residentBytes);
+      long remainingTicks = Math.max(1, limitTicks - tick);
+      long interval = (keyframeBytes * remainingTicks + remainingBytes - 1) / remainingBytes;
+      keyframeInterval =
+          Math.clamp(interval, MIN_CHECKPOINT_INTERVAL, MAX_CHECKPOINT_INTERVAL);
+    }
+  }
+
+  private StepColumns decodeStep(int tick, StepColumns previousColumns) {
+    ByteBuffer frame = frames.read(tick);
+    if (previousColumns == null) {
+      StepColumns columns = new StepColumns(layout, factorPool);
+      decodeFrame(frame, columns);
+      return columns;
+    }
+    if (replayer == null) {
+      // The copy keeps chunks of the previously decoded steps intact.
+      StepColumns columns = previousColumns.copy();
+      decodeFrame(frame, columns);
+      return columns;
+    }
+    int size = getVarint(frame);
+    int[] factorSlots = new int[getVarint(frame)];
+    int[] factorIds = new int[factorSlots.length];
+    int slot = -1;
+    for (int index = 0; index < factorSlots.length; index++) {
+      slot += getVarint(frame);
+      factorSlots[index] = slot;
+      factorIds[index] = getVarint(frame);
+    }
+    StepColumns columns = replayer.replay(previousColumns, factorSlots, factorIds);
+    if (columns.size() != size) {
+      throw new IllegalStateException(
+          "Step of %d cells is replayed with %d cells".formatted(size, columns.size()));
+    }
+    return columns;
+  }
+
+  /** Writes the factor ids that differ from the previous step, which include added slots. */
+  private static ByteBuffer encodeReplayFrame(
+      StepColumns columns, StepColumns origin, int[] changedSlots) {
+    int count = 0;
+    for (int slot : changedSlots) {
+      if (origin.size() <= slot || columns.getFactorId(slot) != origin.getFactorId(slot)) {
+        changedSlots[count++] = slot;
+      }
+    }
+    ByteBuffer frame = ByteBuffer.allocate(2 * MAX_VARINT_BYTES * (count + 1));
+    putVarint(frame, columns.size());
+    putVarint(frame, count);
+    int previousSlot = -1;
+    for (int index = 0; index < count; index++) {
+      putVarint(frame, changedSlots[index] - previousSlot);
+      putVarint(frame, columns.getFactorId(changedSlots[index]));
+      previousSlot = changedSlots[index];
+    }
+    return frame.flip();
+  }
+
+  private static ByteBuffer encodeFrame(
+      StepColumns columns, StepColumns origin, int[] changedSlots) {
+    int[] activeSlots = columns.getActiveSlots();
+    ByteBuffer frame =
+        ByteBuffer.allocate(
+            FRAME_HEADER_BYTES
+                + activeSlots.length * MAX_VARINT_BYTES
+                + changedSlots.length * MAX_ENTRY_BYTES);
+    putVarint(frame, columns.size());
+    putVarint(frame, activeSlots.length);
+    putVarint(frame, changedSlots.length);
+    int previousSlot = -1;
+    for (int slot : activeSlots) {
+      putVarint(frame, slot - previousSlot);
+      previousSlot = slot;
+    }
+    previousSlot = -1;
+    for (int slot : changedSlots) {
+      boolean isAdded = origin.size() <= slot;
+      float heat = (float) columns.getHeat(slot);
+      float cumulativeCombustionRate = columns.getCumulativeCombustionRate(slot);
+      int factorId = columns.getFactorId(slot);
+      int fields = 0;
+      if (isAdded || Float.compare(heat, (float) origin.getHeat(slot)) != 0) {
+        fields |= HEAT_FIELD;
+      }
+      if (isAdded
+          || Float.compare(cumulativeCombustionRate, origin.getCumulativeCombustionRate(slot))
+              != 0) {
+        fields |= COMBUSTION_FIELD;
+      }
+      if (isAdded || factorId != origin.getFactorId(slot)) {
+        fields |= FACTOR_FIELD;
+      }
+      putVarint(frame, slot - previousSlot);
+      previousSlot = slot;
+      frame.put((byte) fields);
+      if ((fields & HEAT_FIELD) != 0) {
+        frame.putFloat(heat);
+      }
+      if ((fields & COMBUSTION_FIELD) != 0) {
+        frame.putFloat(cumulativeCombustionRate);
+      }
+      if ((fields & FACTOR_FIELD) != 0) {
+        putVarint(frame, factorId);
+      }
+    }
+    return frame.flip();
+  }
+
+  private static void decodeFrame(ByteBuffer frame, StepColumns columns) {
+    int size = getVarint(frame);
+    int[] activeSlots = new int[getVarint(frame)];
+    int changedCount = getVarint(frame);
+    int slot = -1;
+    for (int index = 0; index < activeSlots.length; index++) {
+      slot += getVarint(frame);
+      activeSlots[index] = slot;
+    }
+    slot = -1;
+    for (int index = 0; index < changedCount; index++) {
+      slot += getVarint(frame);
+      int fields = frame.get();
+      float heat = (fields & HEAT_FIELD) != 0 ? frame.getFloat() : 0;
+      float cumulativeCombustionRate = (fields & COMBUSTION_FIELD) != 0 ? frame.getFloat() : 0;
+      int factorId = (fields & FACTOR_FIELD) != 0 ? getVarint(frame) : 0;
+      // Added slots are the trailing changed slots and have every field.
+      if (slot == columns.size()) {
+        columns.addCell(heat, factorId);
+        columns.setCumulativeCombustionRate(slot, cumulativeCombustionRate);
+        continue;
+      }
+      if ((fields & HEAT_FIELD) != 0) {
+        columns.setHeat(slot, heat);
+      }
+      if ((fields & COMBUSTION_FIELD) != 0) {
+        columns.setCumulativeCombustionRate(slot, cumulativeCombustionRate);
+      }
+      if ((fields & FACTOR_FIELD) != 0) {
+        columns.setFactorId(slot, factorId);
+      }
+    }
+    if (columns.size() != size) {
+      throw new IllegalStateException(
+          "Frame of %d cells is decoded to %d cells".formatted(size, columns.size()));
+    }
+    columns.setActiveSlots(activeSlots);
+  }
+
+  private static void putVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) (value & 0x7F | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int getVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte part = buffer.get();
+      value |= (part & 0x7F) << shift;
+      if (part >= 0) {
+        return value;
+      }
+    }
+  }
+
+  /** Recomputes steps of a history with checkpoints. */
+  @FunctionalInterface
+  public interface Replayer {
+    /**
+     * Recomputes the step following the given one from a draft step whose factor ids differ from
+     * the given step at the ascending slots, added slots included.
+     */
+    StepColumns replay(StepColumns lastColumns, int[] factorSlots, int[] factorIds);
+  }
+}
@@ -0,0 +1,272 @@
+package ru.cellularwildfire.models;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of steps for clients, an alternative to their JSON.
+ *
+ * <p>The steps are written as a varint count followed by the steps. A step is a flags byte (1 if
+ * final), a varint cell count, a factor table of a varint count and big-endian packed {@link
+ * Cell.Factors}, and the columns below, each prefixed by its varint byte length so that clients
+ * can skip columns:
+ *
+ * <ul>
+ *   <li>x and y: zigzag varint deltas to the previous cell, the first from 0;
+ *   <li>span: varint;
+ *   <li>factors: varint index into the factor table;
+ *   <li>heat: zigzag varint in °C, rounded;
+ *   <li>initial fuel: varint in thousandths;
+ *   <li>cumulative combustion rate: varint in thousandths, at least 1 if positive;
+ *   <li>flags: a byte, 1 if burning.
+ * </ul>
+ *
+ * <p>The encoding is lossy compared with JSON, which keeps the exact values: heat is rounded to
+ * whole °C, and fuel and combustion rates to thousandths, so steps read back match the written ones
+ * only within these precisions. Burning flags are exact.
+ *
+ * <p>Steps of columns are written from the columns without creating cell objects.
+ */
+public final class StepWireFormat {
+  public static final String MEDIA_TYPE = "application/x-cellular-wildfire-steps";
+  private static final int FINAL_FLAG = 1;
+  private static final int BURNING_FLAG = 1;
+  private static final double FUEL_SCALE = 1000;
+  private static final double COMBUSTION_SCALE = 1000;
+
+  private StepWireFormat() {}
+
+  public static void write(List<Simulation.Step> steps, OutputStream output) throws IOException {
+    Column header = new Column();
+    header.putVarint(steps.size());
+    header.writeTo(output);
+    for (Simulation.Step step : steps) {
+      StepEncoder encoder = new StepEncoder();
+      if (step.getRenderedColumns().isPresent()) {
+        encoder.addColumns(step.getRenderedColumns().get());
+      } else {
+        for (Cell cell : step.getCells()) {
+          encoder.addCell(cell);
+        }
+      }
+      encoder.writeTo(step.isFinal(), output);
+    }
+    output.flush();
+  }
+
+  /** Reads steps of cells with the precision of the encoding. */
+  public static List<Simulation.Step> read(InputStream input) throws IOException {
+    DataInputStream dataInput = new DataInputStream(input);
+    int stepCount = readVarint(dataInput);
+    List<Simulation.Step> steps = new ArrayList<>(stepCount);
+    for (int index = 0; index < stepCount; index++) {
+      steps.add(readStep(dataInput));
+    }
+    return steps;
+  }
+
+  private static Simulation.Step readStep(DataInputStream input) throws IOException {
+    int flags = input.readByte();
+    int cellCount = readVarint(input);
+    Cell.Factors[] factors = new Cell.Factors[readVarint(input)];
+    for (int index = 0; index < factors.length; index++) {
+      factors[index] = Cell.Factors.unpack(input.readLong());
+    }
+    int[] x = new int[cellCount];
+    int[] y = new int[cellCount];
+    int[] spans = new int[cellCount];
+    int[] factorIndices = new int[cellCount];
+    int[] heats = new int[cellCount];
+    int[] initialFuels = new int[cellCount];
+    int[] combustionRates = new int[cellCount];
+    readDeltaColumn(input, x);
+    readDeltaColumn(input, y);
+    readColumn(input, spans, false);
+    readColumn(input, factorIndices, false);
+    readColumn(input, heats, true);
+    readColumn(input, initialFuels, false);
+    readColumn(input, combustionRates, false);
+    input.skipNBytes(readVarint(input));
+
+    Simulation.Step step = new Simulation.Step();
+    for (int index = 0; index < cellCount; index++) {
+      Cell.State state =
+          new Cell.State(
+              initialFuels[index] / FUEL_SCALE,
+              heats[index],
+              combustionRates[index] / COMBUSTION_SCALE);
+      step.getLiveCells()
+          .add(
+              new Cell(
+                  new Coordinates(x[index], y[index]),
+                  state,
+                  factors[factorIndices[index]],
+                  spans[index]));
+    }
+    if ((flags & FINAL_FLAG) != 0) {
+      step.markAsFinal();
+    }
+    return step;
+  }
+
+  private static void readDeltaColumn(DataInputStream input, int[] values) throws IOException {
+    readColumn(input, values, true);
+    for (int index = 1; index < values.length; index++) {
+      values[index] += values[index - 1];
+    }
+  }
+
+  private static void readColumn(DataInputStream input, int[] values, boolean isZigzag)
+      throws IOException {
+    readVarint(input);
+    for (int index = 0; index < values.length; index++) {
+      int value = readVarint(input);
+      values[index] = isZigzag ? value >>> 1 ^ -(value & 1) : value;
+    }
+  }
+
+  private static int readVarint(DataInputStream input) throws IOException {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte part = input.readByte();
+      value |= (part & 0x7F) << shift;
+      if (part >= 0) {
+        return value;
+      }
+    }
+  }
+
+  private static final class StepEncoder {
+    private final LongIndexMap factorIndices = new LongIndexMap();
+    private final Column factors = new Column();
+    private final Column x = new Column();
+    private final Column y = new Column();
+    private final Column spans = new Column();
+    private final Column factorColumn = new Column();
+    private final Column heats = new Column();
+    private final Column initialFuels = new Column();
+    private final Column combustionRates = new Column();
+    private final Column flags = new Column();
+    private int cellCount = 0;
+    private int previousX = 0;
+    private int previousY = 0;
+
+    private void addColumns(StepColumns columns) {
+      CellLayout layout = columns.getLayout();
+      FactorPool factorPool = columns.getFactorPool();
+      for (int slot = 0; slot < columns.size(); slot++) {
+        Cell.Factors cellFactors = factorPool.get(columns.getFactorId(slot));
+        float cumulativeCombustionRate = columns.getCumulativeCombustionRate(slot);
+        double initialFuel = layout.getInitialFuel(slot);
+        double heat = columns.getHeat(slot);
+        addCell(
+            layout.getX(slot),
+            layout.getY(slot),
+            1,
+            cellFactors,
+            heat,
+            initialFuel,
+            cumulativeCombustionRate,
+            Cell.isBurning(initialFuel, cumulativeCombustionRate, heat, cellFactors));
+      }
+    }
+
+    private void addCell(Cell cell) {
+      addCell(
+          cell.getCoordinates().getX(),
+          cell.getCoordinates().getY(),
+          cell.getSpan(),
+          cell.getFactors(),
+          cell.getState().getHeat(),
+          cell.getState().getInitialFuel(),
+          cell.getState().getCumulativeCombustionRate(),
+          cell.isBurning());
+    }
+
+    private void addCell(
+        int cellX,
+        int cellY,
+        int span,
+        Cell.Factors cellFactors,
+        double heat,
+        double initialFuel,
+        float cumulativeCombustionRate,
+        boolean isBurning) {
+      long packedFactors = cellFactors.pack();
+      int factorIndex = factorIndices.get(packedFactors);
+      if (factorIndex == LongIndexMap.NO_INDEX) {
+        factorIndex = factorIndices.size();
+        factorIndices.put(packedFactors, factorIndex);
+        factors.putLong(packedFactors);
+      }
+      x.putZigzag(cellX - previousX);
+      y.putZigzag(cellY - previousY);
+      previousX = cellX;
+      previousY = cellY;
+      spans.putVarint(span);
+      factorColumn.putVarint(factorIndex);
+      heats.putZigzag((int) Math.round(heat));
+      initialFuels.putVarint((int) Math.round(initialFuel * FUEL_SCALE));
+      int combustionRate = (int) Math.round(cumulativeCombustionRate * COMBUSTION_SCALE);
+      combustionRates.putVarint(
+          cumulativeCombustionRate > 0 ? Math.max(1, combustionRate) : Math.max(0, combustionRate));
+      flags.putByte(isBurning ? BURNING_FLAG : 0);
+      cellCount++;
+    }
+
+    private void writeTo(boolean isFinal, OutputStream output) throws IOException {
+      Column header = new Column();
+      header.putByte(isFinal ? FINAL_FLAG : 0);
+      header.putVarint(cellCount);
+      header.putVarint(factorIndices.size());
+      header.writeTo(output);
+      factors.writeTo(output);
+      for (Column column :
+          List.of(x, y, spans, factorColumn, heats, initialFuels, combustionRates, flags)) {
+        Column length = new Column();
+        length.putVarint(column.size);
+        length.writeTo(output);
+        column.writeTo(output);
+      }
+    }
+  }
+
+  private static final class Column {
+    private byte[] bytes = new byte[64];
+    private int size = 0;
+
+    private void putByte(int value) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, 2 * size);
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    private void putVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        putByte(value & 0x7F | 0x80);
+        value >>>= 7;
+      }
+      putByte(value);
+    }
+
+    private void putZigzag(int value) {
+      putVarint(value << 1 ^ value >> 31);
+    }
+
+    private void putLong(long value) {
+      for (int shift = 56; 0 <= shift; shift -= 8) {
+        putByte((int) (value >>> shift));
+      }
+    }
+
+    private void writeTo(OutputStream output) throws IOException {
+      output.write(bytes, 0, size);
+    }
+  }
+}
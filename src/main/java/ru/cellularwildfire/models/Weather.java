@@ -15,6 +15,13 @@ public class Weather {
     this.windY = compressWindSpeed(windY);
   }
 
+  protected Weather(byte airTemperature, byte airHumidity, byte windX, byte windY) {
+    this.airTemperature = airTemperature;
+    this.airHumidity = airHumidity;
+    this.windX = windX;
+    this.windY = windY;
+  }
+
   private static byte compressTemperature(double temperature) {
     return compactToByte(Math.round(temperature));
   }
@@ -2,12 +2,17 @@ package ru.cellularwildfire.services;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import org.springframework.stereotype.Service;
 import ru.cellularwildfire.data.ForestTypeFactors;
 import ru.cellularwildfire.models.Cell;
-import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.CellLayout;
 import ru.cellularwildfire.models.Grid;
 import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepColumns;
 
 @Service
 public final class AutomatonAlgorithm {
@@ -24,11 +29,18 @@ public final class AutomatonAlgorithm {
   /** 0.13 in some research model. */
   public static final double DEFAULT_WIND_EFFECT = 0.13;
 
-  private static final double UNIVERSAL_GAS_CONSTANT = 8.3;
-  private static final double CELSIUS_ZERO_TEMPERATURE = 273;
+  static final double UNIVERSAL_GAS_CONSTANT = 8.3;
+  static final double CELSIUS_ZERO_TEMPERATURE = 273;
 
-  private static final double HEAT_LIMIT = 2000;
-  private static final double HEAT_CHANGE_LIMIT = 0.15;
+  static final double HEAT_LIMIT = 2000;
+  static final double HEAT_CHANGE_LIMIT = 0.15;
+  private static final double MIN_TABULATED_HEAT = Byte.MIN_VALUE;
+  private static final int KERNEL_BLOCK_SIZE = 1024;
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+  private static final String VECTOR_KERNELS_CLASS = "ru.cellularwildfire.services.VectorKernels";
+
+  /** Cells that are not burning and whose heat regulation changes less are frozen. */
+  private static final double SETTLED_HEAT_CHANGE = 0.01;
 
   private final double combustionIntensity;
   private final double energyEmission;
@@ -38,6 +50,8 @@ public final class AutomatonAlgorithm {
   private final double humidityEffect;
   private final double slopeEffect;
   private final double windEffect;
+  private final CombustionRateTable combustionRateTable;
+  private final HeatRegulationTable heatRegulationTable;
 
   public AutomatonAlgorithm(
       double combustionIntensity,
@@ -56,6 +70,18 @@ public final class AutomatonAlgorithm {
     this.propagationIntensity = propagationIntensity;
     this.convectionIntensity = convectionIntensity;
     this.radiationIntensity = radiationIntensity;
+
+    CombustionRateTable table =
+        new CombustionRateTable(
+            Cell.IGNITION_TEMPERATURE,
+            HEAT_LIMIT,
+            this::calculateHumidityInfluence,
+            this::calculateTemperatureInfluence);
+    // The exact formula is used if the table is not precise enough for the parameters.
+    this.combustionRateTable =
+        table.getMaxRelativeError() <= CombustionRateTable.MAX_RELATIVE_ERROR ? table : null;
+    this.heatRegulationTable =
+        new HeatRegulationTable(MIN_TABULATED_HEAT, HEAT_LIMIT, this::iterateHeatRegulation);
   }
 
   public AutomatonAlgorithm(double... parameters) {
@@ -82,12 +108,18 @@ public final class AutomatonAlgorithm {
         DEFAULT_WIND_EFFECT);
   }
 
-  private static double estimateDistance(Grid grid, Coordinates base, Coordinates neighbor) {
-    double localCos = Math.cos(Math.toRadians(grid.pointOf(base).lat));
-    // Cell neighborhood through the poles is not expected.
-    double distanceX = Math.abs(base.getX() - neighbor.getX()) * localCos;
-    double distanceY = Math.abs(base.getY() - neighbor.getY());
-    return Math.sqrt(distanceX * distanceX + distanceY * distanceY);
+  /** Returns the parameters in the order of the constructor. */
+  public double[] getParameters() {
+    return new double[] {
+      combustionIntensity,
+      energyEmission,
+      propagationIntensity,
+      convectionIntensity,
+      radiationIntensity,
+      humidityEffect,
+      slopeEffect,
+      windEffect
+    };
   }
 
   private static double toKelvin(double celsiusTemperature) {
@@ -98,6 +130,38 @@ public final class AutomatonAlgorithm {
     return kelvinTemperature - CELSIUS_ZERO_TEMPERATURE;
   }
 
+  private static void forEachInPool(ForkJoinPool pool, int count, IntConsumer action) {
+    pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, count).parallel().forEach(action)));
+  }
+
+  private static void forEachBlockInPool(ForkJoinPool pool, int count, BlockAction action) {
+    int blockCount = (count + KERNEL_BLOCK_SIZE - 1) / KERNEL_BLOCK_SIZE;
+    forEachInPool(
+        pool,
+        blockCount,
+        block ->
+            action.perform(
+                block * KERNEL_BLOCK_SIZE, Math.min(count, (block + 1) * KERNEL_BLOCK_SIZE)));
+  }
+
+  private static int findVicinityIndex(CellLayout layout, int slot, int neighborSlot, int index) {
+    int reverseIndex = 8 - index;
+    if (layout.getVicinitySlot(neighborSlot, reverseIndex) == slot) {
+      return reverseIndex;
+    }
+    for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+      if (layout.getVicinitySlot(neighborSlot, vicinityIndex) == slot) {
+        return vicinityIndex;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isSettled(StepColumns columns, int slot, double unregulatedHeat) {
+    return !columns.isBurning(slot)
+        && Math.abs(columns.getHeat(slot) - unregulatedHeat) < SETTLED_HEAT_CHANGE;
+  }
+
   private static void setEmittedEnergy(Cell cell, double energy) {
     cell.setTwin(new Cell(null, new Cell.State(0, energy), null));
   }
@@ -107,10 +171,185 @@ public final class AutomatonAlgorithm {
   }
 
   public void refineDraftStep(Simulation.Step draftStep, Simulation simulation) {
-    List<Cell> burningCells = draftStep.getCells().stream().filter(Cell::isBurning).toList();
+    List<Cell> burningCells = draftStep.getLiveCells().stream().filter(Cell::isBurning).toList();
     burningCells.forEach(this::burnFuel);
     burningCells.forEach((cell) -> transferEnergy(cell, simulation.getGrid()));
-    draftStep.getCells().forEach(this::regulateHeat);
+    draftStep.getLiveCells().forEach(this::regulateHeat);
+  }
+
+  /**
+   * Refines the active front of the draft step and leaves in it only the cells that are burning or
+   * whose heat has not settled yet.
+   */
+  public void refineDraftStep(
+      StepColumns draftColumns, Simulation simulation, AutomatonKernels kernels) {
+    int[] activeSlots = draftColumns.getActiveSlots();
+    int[] burningSlots = draftColumns.findBurningSlots();
+    double[] combustionRates = new double[burningSlots.length];
+    kernels.calculateCombustionRates(
+        draftColumns, burningSlots, combustionRates, 0, burningSlots.length);
+    double[] emittedEnergies = new double[burningSlots.length];
+    for (int index = 0; index < burningSlots.length; index++) {
+      emittedEnergies[index] = burnFuel(draftColumns, burningSlots[index], combustionRates[index]);
+    }
+    for (int index = 0; index < burningSlots.length; index++) {
+      transferEnergy(
+          draftColumns, burningSlots[index], emittedEnergies[index], simulation.getGrid());
+    }
+    double[] regulatedHeats = new double[activeSlots.length];
+    kernels.regulateHeats(draftColumns, activeSlots, regulatedHeats, 0, activeSlots.length);
+    double[] unregulatedHeats = new double[activeSlots.length];
+    for (int index = 0; index < activeSlots.length; index++) {
+      unregulatedHeats[index] = draftColumns.getHeat(activeSlots[index]);
+      draftColumns.setHeat(activeSlots[index], regulatedHeats[index]);
+    }
+    draftColumns.setActiveSlots(
+        IntStream.range(0, activeSlots.length)
+            .filter(index -> !isSettled(draftColumns, activeSlots[index], unregulatedHeats[index]))
+            .map(index -> activeSlots[index])
+            .toArray());
+  }
+
+  /**
+   * Refines the active front of the draft step on the pool with results identical to the serial
+   * refinement.
+   */
+  public void refineDraftStep(
+      StepColumns draftColumns,
+      Simulation simulation,
+      AutomatonKernels kernels,
+      ForkJoinPool pool) {
+    refineDraftStep(draftColumns, simulation, kernels, pool, true);
+  }
+
+  /**
+   * Refines the active front of the draft step on the pool.
+   *
+   * <p>The deterministic refinement reformulates energy transfer as a gather: every burning cell
+   * computes the shares of its emitted energy, then every cell sums up the shares addressed to it
+   * in the serial order of the emitting cells, so the results are identical to the serial
+   * refinement for any pool size. Otherwise the shares are added to the cells atomically as they
+   * are computed, and the rounding of the sums depends on the thread interleaving.
+   */
+  public void refineDraftStep(
+      StepColumns draftColumns,
+      Simulation simulation,
+      AutomatonKernels kernels,
+      ForkJoinPool pool,
+      boolean deterministic) {
+    CellLayout layout = draftColumns.getLayout();
+    int[] activeSlots = draftColumns.getActiveSlots();
+    // Chunks are copied before the concurrent writes.
+    for (int slot : activeSlots) {
+      draftColumns.prepareForWriting(slot);
+    }
+    int[] burningSlots =
+        pool.invoke(
+            ForkJoinTask.adapt(
+                () -> Arrays.stream(activeSlots).parallel().filter(draftColumns::isBurning).toArray()));
+
+    double[] combustionRates = new double[burningSlots.length];
+    forEachBlockInPool(
+        pool,
+        burningSlots.length,
+        (from, to) ->
+            kernels.calculateCombustionRates(
+                draftColumns, burningSlots, combustionRates, from, to));
+    if (deterministic) {
+      double[] energyShares = new double[9 * burningSlots.length];
+      forEachInPool(
+          pool,
+          burningSlots.length,
+          index -> {
+            int slot = burningSlots[index];
+            double emittedEnergy = burnFuel(draftColumns, slot, combustionRates[index]);
+            shareEnergy(
+                draftColumns, slot, emittedEnergy, simulation.getGrid(), energyShares, 9 * index);
+          });
+      forEachInPool(
+          pool,
+          activeSlots.length,
+          index ->
+              gatherEnergy(draftColumns, layout, activeSlots[index], burningSlots, energyShares));
+    } else {
+      forEachInPool(
+          pool,
+          burningSlots.length,
+          index -> {
+            int slot = burningSlots[index];
+            double emittedEnergy = burnFuel(draftColumns, slot, combustionRates[index]);
+            double[] energyShares = new double[9];
+            shareEnergy(draftColumns, slot, emittedEnergy, simulation.getGrid(), energyShares, 0);
+            for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+              int targetSlot =
+                  vicinityIndex == 4 ? slot : layout.getVicinitySlot(slot, vicinityIndex);
+              if (targetSlot != CellLayout.NO_SLOT) {
+                draftColumns.addHeatAtomically(targetSlot, energyShares[vicinityIndex]);
+              }
+            }
+          });
+    }
+    double[] regulatedHeats = new double[activeSlots.length];
+    forEachBlockInPool(
+        pool,
+        activeSlots.length,
+        (from, to) -> kernels.regulateHeats(draftColumns, activeSlots, regulatedHeats, from, to));
+    double[] unregulatedHeats = new double[activeSlots.length];
+    forEachInPool(
+        pool,
+        activeSlots.length,
+        index -> {
+          unregulatedHeats[index] = draftColumns.getHeat(activeSlots[index]);
+          draftColumns.setHeat(activeSlots[index], regulatedHeats[index]);
+        });
+    draftColumns.setActiveSlots(
+        pool.invoke(
+            ForkJoinTask.adapt(
+                () ->
+                    IntStream.range(0, activeSlots.length)
+                        .parallel()
+                        .filter(
+                            index ->
+                                !isSettled(
+                                    draftColumns, activeSlots[index], unregulatedHeats[index]))
+                        .map(index -> activeSlots[index])
+                        .toArray())));
+  }
+
+  /** Checks whether the heat of the cell changes by less than the settled change on regulation. */
+  public boolean hasSettledHeat(Cell cell) {
+    double heat = cell.getState().getHeat();
+    return Math.abs(regulateHeat(heat, cell.getFactors().getAirTemperature()) - heat)
+        < SETTLED_HEAT_CHANGE;
+  }
+
+  /** Checks whether the heat of the slot changes by less than the settled change on regulation. */
+  public boolean hasSettledHeat(StepColumns columns, int slot) {
+    double heat = columns.getHeat(slot);
+    return Math.abs(regulateHeat(heat, columns.getFactors(slot).getAirTemperature()) - heat)
+        < SETTLED_HEAT_CHANGE;
+  }
+
+  /**
+   * Creates kernels of the given kind.
+   *
+   * <p>Vector kernels are built with the {@code preview} Maven profile only and require the
+   * {@code jdk.incubator.vector} module to be enabled, otherwise scalar kernels are created
+   * instead. They are slower than scalar kernels on the measured fronts.
+   */
+  public AutomatonKernels createKernels(Kernel kernel) {
+    if (kernel == Kernel.VECTOR && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (AutomatonKernels)
+            Class.forName(VECTOR_KERNELS_CLASS)
+                .getDeclaredConstructor(double.class, double.class, double.class, double.class)
+                .newInstance(
+                    combustionIntensity, humidityEffect, convectionIntensity, radiationIntensity);
+      } catch (ReflectiveOperationException | LinkageError exception) {
+        return new ScalarKernels();
+      }
+    }
+    return new ScalarKernels();
   }
 
   private void burnFuel(Cell cell) {
@@ -120,14 +359,28 @@ public final class AutomatonAlgorithm {
     setEmittedEnergy(cell, energyEmission * burnedFuel);
   }
 
+  private double burnFuel(StepColumns columns, int slot, double combustionRate) {
+    double priorFuel = columns.getFuel(slot);
+    columns.accountCombustionStep(slot, combustionRate);
+    double burnedFuel = priorFuel - columns.getFuel(slot);
+    // Emitted energy is kept with the precision of cell heat.
+    return (float) (energyEmission * burnedFuel);
+  }
+
   private void transferEnergy(Cell cell, Grid grid) {
     double[] proximity = new double[9];
     proximity[8] = 1;
     int neighborIndex = 0;
     for (Cell neighbor : cell.iterateNeighbors()) {
-      double distance = estimateDistance(grid, cell.getCoordinates(), neighbor.getCoordinates());
-      double environmentalEffect = calculateEnvironmentalEffect(cell, neighbor, grid);
-      proximity[neighborIndex++] = propagationIntensity * environmentalEffect / distance;
+      proximity[neighborIndex++] =
+          calculateProximity(
+              grid,
+              cell.getCoordinates().getX(),
+              cell.getCoordinates().getY(),
+              cell.getFactors(),
+              neighbor.getCoordinates().getX(),
+              neighbor.getCoordinates().getY(),
+              neighbor.getFactors());
     }
     double totalProximity = Arrays.stream(proximity).sum();
 
@@ -143,10 +396,122 @@ public final class AutomatonAlgorithm {
     }
   }
 
+  private void transferEnergy(StepColumns columns, int slot, double emittedEnergy, Grid grid) {
+    CellLayout layout = columns.getLayout();
+    double[] energyShares = new double[9];
+    shareEnergy(columns, slot, emittedEnergy, grid, energyShares, 0);
+    columns.setHeat(slot, columns.getHeat(slot) + energyShares[4]);
+    for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+      int neighborSlot = layout.getVicinitySlot(slot, vicinityIndex);
+      if (vicinityIndex == 4 || neighborSlot == CellLayout.NO_SLOT) {
+        continue;
+      }
+      columns.setHeat(neighborSlot, columns.getHeat(neighborSlot) + energyShares[vicinityIndex]);
+    }
+  }
+
+  /** Writes the emitted energy shares of the cell and its neighbors in vicinity index order. */
+  private void shareEnergy(
+      StepColumns columns,
+      int slot,
+      double emittedEnergy,
+      Grid grid,
+      double[] energyShares,
+      int offset) {
+    CellLayout layout = columns.getLayout();
+    int x = layout.getX(slot);
+    int y = layout.getY(slot);
+    Cell.Factors factors = columns.getFactors(slot);
+    double[] proximity = new double[9];
+    proximity[8] = 1;
+    int neighborIndex = 0;
+    for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+      int neighborSlot = layout.getVicinitySlot(slot, vicinityIndex);
+      if (vicinityIndex == 4 || neighborSlot == CellLayout.NO_SLOT) {
+        continue;
+      }
+      proximity[neighborIndex++] =
+          calculateProximity(
+              grid,
+              x,
+              y,
+              factors,
+              layout.getX(neighborSlot),
+              layout.getY(neighborSlot),
+              columns.getFactors(neighborSlot));
+    }
+    double totalProximity = Arrays.stream(proximity).sum();
+
+    energyShares[offset + 4] = emittedEnergy * proximity[8] / totalProximity;
+    neighborIndex = 0;
+    for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+      int neighborSlot = layout.getVicinitySlot(slot, vicinityIndex);
+      if (vicinityIndex == 4 || neighborSlot == CellLayout.NO_SLOT) {
+        continue;
+      }
+      energyShares[offset + vicinityIndex] =
+          emittedEnergy * proximity[neighborIndex++] / totalProximity;
+    }
+  }
+
+  private void gatherEnergy(
+      StepColumns columns,
+      CellLayout layout,
+      int slot,
+      int[] burningSlots,
+      double[] energyShares) {
+    // Share positions grow with the serial order of the emitting cells.
+    int[] sharePositions = new int[9];
+    int shareCount = 0;
+    for (int vicinityIndex = 0; vicinityIndex < 9; vicinityIndex++) {
+      int sourceSlot =
+          vicinityIndex == 4 ? slot : layout.getVicinitySlot(slot, vicinityIndex);
+      if (sourceSlot == CellLayout.NO_SLOT) {
+        continue;
+      }
+      int burningIndex = Arrays.binarySearch(burningSlots, sourceSlot);
+      if (burningIndex < 0) {
+        continue;
+      }
+      int sourceVicinityIndex =
+          vicinityIndex == 4 ? 4 : findVicinityIndex(layout, slot, sourceSlot, vicinityIndex);
+      if (sourceVicinityIndex < 0) {
+        continue;
+      }
+      int position = 9 * burningIndex + sourceVicinityIndex;
+      int insertion = shareCount++;
+      while (insertion > 0 && sharePositions[insertion - 1] > position) {
+        sharePositions[insertion] = sharePositions[insertion - 1];
+        insertion--;
+      }
+      sharePositions[insertion] = position;
+    }
+    if (shareCount == 0) {
+      return;
+    }
+    float heat = (float) columns.getHeat(slot);
+    for (int index = 0; index < shareCount; index++) {
+      heat = (float) (heat + energyShares[sharePositions[index]]);
+    }
+    columns.setHeat(slot, heat);
+  }
+
   private void regulateHeat(Cell cell) {
-    double heat = toKelvin(Math.min(cell.getState().getHeat(), HEAT_LIMIT));
-    double airTemperature = toKelvin(cell.getFactors().getAirTemperature());
+    double airTemperature = cell.getFactors().getAirTemperature();
+    cell.getState().setHeat(regulateHeat(cell.getState().getHeat(), airTemperature));
+  }
+
+  private double regulateHeat(double celsiusHeat, double celsiusAirTemperature) {
+    return heatRegulationTable.regulate(Math.min(celsiusHeat, HEAT_LIMIT), celsiusAirTemperature);
+  }
+
+  private double iterateHeatRegulation(
+      double celsiusHeat, double celsiusAirTemperature, long[] pattern) {
+    double heat = toKelvin(Math.min(celsiusHeat, HEAT_LIMIT));
+    double airTemperature = toKelvin(celsiusAirTemperature);
     double phase = 0;
+    // Every iteration adds two bits marking which of the heat change limits were applied.
+    long iterationPattern = 1;
     while (phase < 0.999) {
       double convectionRate = -convectionIntensity * (heat - airTemperature);
       double radiationRate = -radiationIntensity * Math.pow(heat, 4);
@@ -154,15 +519,18 @@ public final class AutomatonAlgorithm {
       double phaseFraction = 1;
       double iterationDuration = phaseFraction;
       double heatChange = heatChangeRate * iterationDuration;
+      iterationPattern <<= 2;
       if (Math.abs(heatChange) > heat * HEAT_CHANGE_LIMIT) {
         heatChange = heat * HEAT_CHANGE_LIMIT * (heatChange < 0 ? -1 : 1);
         iterationDuration = heatChange / heatChangeRate;
         phaseFraction = iterationDuration;
+        iterationPattern |= 1;
       }
       if (phase + phaseFraction > 1) {
         phaseFraction = 1 - phase;
         iterationDuration = phaseFraction;
         heatChange = heatChangeRate * iterationDuration;
+        iterationPattern |= 2;
       }
       phase += phaseFraction;
       heat += heatChange;
@@ -170,44 +538,111 @@ public final class AutomatonAlgorithm {
         heat = 0;
       }
     }
-    cell.getState().setHeat(toCelsius(heat));
+    if (pattern != null) {
+      pattern[0] = iterationPattern;
+    }
+    return toCelsius(heat);
   }
 
   private double calculateCombustionRate(Cell cell) {
-    double activationEnergy =
-        ForestTypeFactors.determineActivationEnergy(cell.getFactors().getForestType());
-    double temperature = toKelvin(cell.getState().getHeat());
+    return calculateCombustionRate(
+        cell.getFactors().getForestType(),
+        cell.getState().getHeat(),
+        cell.getFactors().getAirHumidity());
+  }
+
+  private double calculateCombustionRate(byte forestType, double heat, double airHumidity) {
+    if (combustionRateTable != null && combustionRateTable.covers(forestType, heat, airHumidity)) {
+      return combustionRateTable.calculate(forestType, heat, airHumidity);
+    }
+    return calculateHumidityInfluence(airHumidity)
+        * calculateTemperatureInfluence(forestType, heat);
+  }
+
+  private double calculateHumidityInfluence(double airHumidity) {
+    return Math.pow(1 - airHumidity, humidityEffect);
+  }
+
+  private double calculateTemperatureInfluence(byte forestType, double heat) {
+    double activationEnergy = ForestTypeFactors.determineActivationEnergy(forestType);
+    double temperature = toKelvin(heat);
     double firePower = -activationEnergy / UNIVERSAL_GAS_CONSTANT / temperature;
-    double airHumidityInfluence = Math.pow(1 - cell.getFactors().getAirHumidity(), humidityEffect);
-    return airHumidityInfluence * combustionIntensity * Math.exp(firePower);
+    return combustionIntensity * Math.exp(firePower);
   }
 
-  private double calculateEnvironmentalEffect(Cell cell, Cell otherCell, Grid grid) {
-    return calculateSlopeEffect(cell, otherCell, grid) * calculateWindEffect(cell, otherCell);
+  private double calculateProximity(
+      Grid grid,
+      int x,
+      int y,
+      Cell.Factors factors,
+      int neighborX,
+      int neighborY,
+      Cell.Factors neighborFactors) {
+    double localCos = Math.cos(Math.toRadians(grid.latOf(y)));
+    // Cell neighborhood through the poles is not expected.
+    double distanceX = Math.abs(x - neighborX) * localCos;
+    double distanceY = Math.abs(y - neighborY);
+    double distance = Math.sqrt(distanceX * distanceX + distanceY * distanceY);
+    double environmentalEffect =
+        calculateSlopeEffect(grid, distance, factors, neighborFactors)
+            * calculateWindEffect(x, y, factors, neighborX, neighborY);
+    return propagationIntensity * environmentalEffect / distance;
   }
 
-  private double calculateSlopeEffect(Cell cell, Cell otherCell, Grid grid) {
-    double elevation = otherCell.getFactors().getElevation() - cell.getFactors().getElevation();
+  private double calculateSlopeEffect(
+      Grid grid, double distance, Cell.Factors factors, Cell.Factors neighborFactors) {
+    double elevation = neighborFactors.getElevation() - factors.getElevation();
     if (elevation == 0) {
       return 1;
     }
-    double localCos = Math.cos(Math.toRadians(grid.pointOf(cell.getCoordinates()).lat));
-    double distanceX =
-        Math.abs(cell.getCoordinates().getX() - otherCell.getCoordinates().getX()) * localCos;
-    double distanceY = Math.abs(cell.getCoordinates().getY() - otherCell.getCoordinates().getY());
-    double distance =
-        grid.getCellHeight() * Math.sqrt(distanceX * distanceX + distanceY * distanceY);
-    double slope = elevation / distance;
+    double slope = elevation / (grid.getCellHeight() * distance);
     return Math.exp(slopeEffect * slope);
   }
 
-  private double calculateWindEffect(Cell cell, Cell otherCell) {
-    double vectorX = otherCell.getCoordinates().getX() - cell.getCoordinates().getX();
-    double vectorY = otherCell.getCoordinates().getY() - cell.getCoordinates().getY();
-    double windX = cell.getFactors().getWindX();
-    double windY = cell.getFactors().getWindY();
+  private double calculateWindEffect(
+      int x, int y, Cell.Factors factors, int neighborX, int neighborY) {
+    double vectorX = neighborX - x;
+    double vectorY = neighborY - y;
+    double windX = factors.getWindX();
+    double windY = factors.getWindY();
     double windSpeed =
         (windX * vectorX + windY * vectorY) / Math.sqrt(vectorX * vectorX + vectorY * vectorY);
     return Math.exp(windEffect * windSpeed);
   }
+
+  public enum Kernel {
+    /** Evaluates cells one by one using precomputed tables. */
+    SCALAR,
+    /** Evaluates exact formulas on SIMD lanes if the Vector API is available. */
+    VECTOR
+  }
+
+  @FunctionalInterface
+  private interface BlockAction {
+    void perform(int from, int to);
+  }
+
+  private final class ScalarKernels implements AutomatonKernels {
+    @Override
+    public void calculateCombustionRates(
+        StepColumns columns, int[] slots, double[] combustionRates, int from, int to) {
+      for (int index = from; index < to; index++) {
+        int slot = slots[index];
+        Cell.Factors factors = columns.getFactors(slot);
+        combustionRates[index] =
+            calculateCombustionRate(
+                factors.getForestType(), columns.getHeat(slot), factors.getAirHumidity());
+      }
+    }
+
+    @Override
+    public void regulateHeats(
+        StepColumns columns, int[] slots, double[] regulatedHeats, int from, int to) {
+      for (int index = from; index < to; index++) {
+        int slot = slots[index];
+        double airTemperature = columns.getFactors(slot).getAirTemperature();
+        regulatedHeats[index] = regulateHeat(columns.getHeat(slot), airTemperature);
+      }
+    }
+  }
 }
@@ -0,0 +1,13 @@
+package ru.cellularwildfire.services;
+
+import ru.cellularwildfire.models.StepColumns;
+
+/** Per-cell computations of {@link AutomatonAlgorithm} applied to ranges of column slots. */
+public interface AutomatonKernels {
+  /** Writes the combustion rates of the slots in the index range to the same indices. */
+  void calculateCombustionRates(
+      StepColumns columns, int[] slots, double[] combustionRates, int from, int to);
+
+  /** Writes the regulated heats of the slots in the index range to the same indices. */
+  void regulateHeats(StepColumns columns, int[] slots, double[] regulatedHeats, int from, int to);
+}
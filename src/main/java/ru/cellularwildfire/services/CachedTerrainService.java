@@ -0,0 +1,72 @@
+package ru.cellularwildfire.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+
+/**
+ * Thread-safe cache of terrain lookups by grid cell shared by the simulations of one grid.
+ *
+ * <p>All terrain values of a cell are looked up together on the first request for the cell.
+ */
+public final class CachedTerrainService implements TerrainService {
+  private final TerrainService terrainService;
+  private final Grid grid;
+  private final ConcurrentHashMap<Long, Terrain> cache = new ConcurrentHashMap<>();
+
+  public CachedTerrainService(TerrainService terrainService, Grid grid) {
+    this.terrainService = terrainService;
+    this.grid = grid;
+  }
+
+  @Override
+  public byte getForestType(LatLng point) {
+    return lookUp(point).forestType;
+  }
+
+  @Override
+  public double getFuel(LatLng point) {
+    return lookUp(point).fuel;
+  }
+
+  @Override
+  public double getElevation(LatLng point) {
+    return lookUp(point).elevation;
+  }
+
+  /** Looks up the terrain of every cell of the rectangle between the corners in advance. */
+  public void preload(Coordinates lowerCorner, Coordinates upperCorner) {
+    IntStream.rangeClosed(lowerCorner.getY(), upperCorner.getY())
+        .parallel()
+        .forEach(
+            y -> {
+              for (int x = lowerCorner.getX(); x <= upperCorner.getX(); x++) {
+                lookUp(grid.pointOf(new Coordinates(x, y)));
+              }
+            });
+  }
+
+  private Terrain lookUp(LatLng point) {
+    return cache.computeIfAbsent(
+        grid.coordinatesOf(point).pack(),
+        key ->
+            new Terrain(
+                terrainService.getForestType(point),
+                terrainService.getFuel(point),
+                terrainService.getElevation(point)));
+  }
+
+  private static final class Terrain {
+    private final byte forestType;
+    private final double fuel;
+    private final double elevation;
+
+    private Terrain(byte forestType, double fuel, double elevation) {
+      this.forestType = forestType;
+      this.fuel = fuel;
+      this.elevation = elevation;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package ru.cellularwildfire.services;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Weather;
+
+/**
+ * Thread-safe cache of weather lookups by grid cell and date shared by the simulations of one
+ * grid.
+ *
+ * <p>Missing weather is not cached, so it is requested again later.
+ */
+public final class CachedWeatherService implements WeatherService {
+  private final WeatherService weatherService;
+  private final Grid grid;
+  private final ConcurrentHashMap<Long, ConcurrentHashMap<Long, Weather>> cache =
+      new ConcurrentHashMap<>();
+
+  public CachedWeatherService(WeatherService weatherService, Grid grid) {
+    this.weatherService = weatherService;
+    this.grid = grid;
+  }
+
+  @Override
+  public Optional<Weather> getWeather(LatLng point, Instant date) {
+    ConcurrentHashMap<Long, Weather> dateCache =
+        cache.computeIfAbsent(date.getEpochSecond(), key -> new ConcurrentHashMap<>());
+    long coordinates = grid.coordinatesOf(point).pack();
+    Weather weather = dateCache.get(coordinates);
+    if (weather == null) {
+      Optional<Weather> requestedWeather = weatherService.getWeather(point, date);
+      if (requestedWeather.isEmpty()) {
+        return Optional.empty();
+      }
+      weather = dateCache.computeIfAbsent(coordinates, key -> requestedWeather.get());
+    }
+    return Optional.of(weather);
+  }
+}
@@ -0,0 +1,42 @@
+package ru.cellularwildfire.services;
+
+import java.util.Optional;
+import ru.cellularwildfire.models.CellIndex;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Caches a {@link CellIndex} of each computed step queried by viewport or rendered into tiles, so
+ * that the cells of a step are indexed once for all queries. Indices are kept in a {@link
+ * SimulationCache}.
+ *
+ * <p>Steps are indexed on the first query. Steps whose cells are the slots of their columns are
+ * indexed by extending the cached index of the previous step with the added slots, and their
+ * indices are kept without the columns, which are bound again on each query, so that the cache
+ * does not keep decoded steps of the history alive. Other steps are indexed from their cells.
+ */
+public final class CellIndexCache {
+  private final SimulationCache<CellIndex> cache;
+
+  /** Creates a cache that keeps no indices if the byte budget is not positive. */
+  public CellIndexCache(long byteBudget) {
+    this.cache = new SimulationCache<>(byteBudget, CellIndex::countBytes);
+  }
+
+  public long getCachedBytes() {
+    return cache.getCachedBytes();
+  }
+
+  public CellIndex getIndex(Simulation simulation, int tick, Simulation.Step step) {
+    CellIndex cachedIndex = cache.get(simulation, tick);
+    if (cachedIndex != null) {
+      return cachedIndex.bindTo(step);
+    }
+    CellIndex index =
+        Optional.ofNullable(cache.get(simulation, tick - 1))
+            .flatMap(previousIndex -> previousIndex.extendTo(step))
+            .or(() -> CellIndex.ofColumns(step))
+            .orElseGet(() -> new CellIndex(step.getCells()));
+    cache.put(simulation, tick, index.withoutColumns());
+    return index;
+  }
+}
@@ -0,0 +1,97 @@
+package ru.cellularwildfire.services;
+
+import java.util.function.DoubleUnaryOperator;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+
+/**
+ * Precomputed combustion rates of burning cells.
+ *
+ * <p>The rate is a product of a humidity influence and a temperature influence. Humidity is stored
+ * as a whole percentage, so its influence is tabulated exactly. The temperature influence is
+ * tabulated per forest type over the burning heat range and linearly interpolated. The relative
+ * error of the interpolation is measured in the middle of every table interval, where it peaks for
+ * the convex temperature influence, and is available as {@link #getMaxRelativeError()}.
+ */
+public final class CombustionRateTable {
+  /** Relative error of the table that makes it a valid replacement of the exact formula. */
+  public static final double MAX_RELATIVE_ERROR = 1e-5;
+
+  private static final int HUMIDITY_PERCENTAGES = 100;
+  private static final double HEAT_STEP = 0.2;
+
+  private final double minHeat;
+  private final double maxHeat;
+  private final double[] humidityInfluences;
+  private final double[][] temperatureInfluences;
+  private final double maxRelativeError;
+
+  public CombustionRateTable(
+      double minHeat,
+      double maxHeat,
+      DoubleUnaryOperator humidityInfluence,
+      TemperatureInfluence temperatureInfluence) {
+    this.minHeat = minHeat;
+    this.maxHeat = maxHeat;
+
+    humidityInfluences = new double[HUMIDITY_PERCENTAGES + 1];
+    for (int percentage = 0; percentage <= HUMIDITY_PERCENTAGES; percentage++) {
+      humidityInfluences[percentage] =
+          humidityInfluence.applyAsDouble(percentage / (double) HUMIDITY_PERCENTAGES);
+    }
+
+    int heatSteps = (int) Math.ceil((maxHeat - minHeat) / HEAT_STEP);
+    temperatureInfluences = new double[ForestType.MIXED + 1][];
+    double error = 0;
+    for (byte forestType = ForestType.EVERGREEN_NEEDLE_LEAF;
+        forestType <= ForestType.MIXED;
+        forestType++) {
+      double[] influences = new double[heatSteps + 2];
+      for (int index = 0; index < influences.length; index++) {
+        influences[index] = temperatureInfluence.calculate(forestType, minHeat + index * HEAT_STEP);
+      }
+      for (int index = 0; index < heatSteps; index++) {
+        double exactInfluence =
+            temperatureInfluence.calculate(forestType, minHeat + (index + 0.5) * HEAT_STEP);
+        double tabulatedInfluence = (influences[index] + influences[index + 1]) / 2;
+        if (exactInfluence > 0) {
+          error = Math.max(error, Math.abs(tabulatedInfluence / exactInfluence - 1));
+        }
+      }
+      temperatureInfluences[forestType] = influences;
+    }
+    maxRelativeError = error;
+  }
+
+  public double getMaxRelativeError() {
+    return maxRelativeError;
+  }
+
+  /** Checks if the table covers the inputs, otherwise the exact formula is required. */
+  public boolean covers(byte forestType, double heat, double airHumidity) {
+    int percentage = (int) Math.round(airHumidity * HUMIDITY_PERCENTAGES);
+    return ForestType.EVERGREEN_NEEDLE_LEAF <= forestType
+        && forestType <= ForestType.MIXED
+        && minHeat <= heat
+        && heat <= maxHeat
+        && 0 <= percentage
+        && percentage <= HUMIDITY_PERCENTAGES
+        && percentage / (double) HUMIDITY_PERCENTAGES == airHumidity;
+  }
+
+  /** Returns the tabulated rate for the inputs that are {@link #covers covered}. */
+  public double calculate(byte forestType, double heat, double airHumidity) {
+    double position = (heat - minHeat) / HEAT_STEP;
+    int index = (int) position;
+    double fraction = position - index;
+    double[] influences = temperatureInfluences[forestType];
+    double temperatureInfluence =
+        influences[index] + (influences[index + 1] - influences[index]) * fraction;
+    int percentage = (int) Math.round(airHumidity * HUMIDITY_PERCENTAGES);
+    return humidityInfluences[percentage] * temperatureInfluence;
+  }
+
+  @FunctionalInterface
+  public interface TemperatureInfluence {
+    double calculate(byte forestType, double heat);
+  }
+}
@@ -0,0 +1,229 @@
+package ru.cellularwildfire.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import ru.cellularwildfire.models.EnsembleAggregate;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.Weather;
+
+/**
+ * Runs Monte Carlo ensembles of a scenario: members perturb the ignition point, the weather and
+ * the intensities of the algorithm, run in parallel and are aggregated into burn probabilities of
+ * cells and the distribution of the damaged area.
+ *
+ * <p>Members of a run share one cache of terrain and weather lookups and release their histories
+ * once aggregated. They refine their steps serially, since the ensemble is already parallel.
+ */
+public final class EnsembleRunner {
+  /** Indices of the combustion, emission, propagation and wind intensities among parameters. */
+  private static final int[] PERTURBED_PARAMETERS = {0, 1, 2, 7};
+
+  private final TerrainService terrainService;
+  private final WeatherService weatherService;
+  private final AutomatonAlgorithm algorithm;
+  private final Simulator.Settings settings;
+  private final int parallelism;
+
+  public EnsembleRunner(
+      TerrainService terrainService,
+      WeatherService weatherService,
+      AutomatonAlgorithm algorithm,
+      Simulator.Settings settings,
+      int parallelism) {
+    this.terrainService = terrainService;
+    this.weatherService = weatherService;
+    this.algorithm = algorithm;
+    this.settings = settings.withParallelism(1);
+    this.parallelism = parallelism;
+  }
+
+  public EnsembleAggregate run(Scenario scenario) {
+    return run(scenario, aggregate -> {});
+  }
+
+  /**
+   * Runs the members of the scenario and calls the listener with the aggregate after each member
+   * is accumulated, so that partial results can be streamed.
+   */
+  public EnsembleAggregate run(Scenario scenario, Consumer<EnsembleAggregate> listener) {
+    Grid grid = new Grid(Simulator.DEFAULT_GRID_SCALE);
+    TerrainService sharedTerrainService = new CachedTerrainService(terrainService, grid);
+    WeatherService sharedWeatherService = new CachedWeatherService(weatherService, grid);
+    EnsembleAggregate aggregate = new EnsembleAggregate(grid);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(
+              () ->
+                  IntStream.range(0, scenario.memberCount)
+                      .parallel()
+                      .forEach(
+                          member -> {
+                            Simulation simulation =
+                                runMember(
+                                    scenario, member, sharedTerrainService, sharedWeatherService);
+                            aggregate.accumulate(simulation);
+                            simulation.release();
+                            listener.accept(aggregate);
+                          }))
+          .join();
+    } finally {
+      pool.shutdown();
+    }
+    return aggregate;
+  }
+
+  private Simulation runMember(
+      Scenario scenario,
+      int member,
+      TerrainService sharedTerrainService,
+      WeatherService sharedWeatherService) {
+    Random random = new Random(scenario.seed * 31 + member);
+    double[] parameters = algorithm.getParameters();
+    for (int index : PERTURBED_PARAMETERS) {
+      parameters[index] *= Math.exp(scenario.parameterSpread * random.nextGaussian());
+    }
+    WeatherService memberWeatherService =
+        new PerturbedWeatherService(
+            sharedWeatherService,
+            scenario.temperatureSpread * random.nextGaussian(),
+            scenario.humiditySpread * random.nextGaussian(),
+            scenario.windSpread * random.nextGaussian(),
+            scenario.windSpread * random.nextGaussian());
+    Simulator simulator =
+        new Simulator(
+            sharedTerrainService,
+            memberWeatherService,
+            new AutomatonAlgorithm(parameters),
+            settings);
+
+    LatLng startPoint =
+        new LatLng(
+            scenario.startPoint.lat
+                + scenario.ignitionSpread * random.nextGaussian() / Simulator.DEFAULT_GRID_SCALE,
+            scenario.startPoint.lng
+                + scenario.ignitionSpread * random.nextGaussian() / Simulator.DEFAULT_GRID_SCALE);
+    Simulation simulation = simulator.createSimulation(startPoint);
+    if (simulator.tryStartSimulation(simulation)) {
+      simulator.progressSimulation(simulation, scenario.ticks);
+    }
+    return simulation;
+  }
+
+  /** Immutable ensemble scenario, every modification creates a copy. */
+  public static final class Scenario {
+    private final LatLng startPoint;
+    private final int ticks;
+    private final int memberCount;
+    private long seed = 0;
+    private double ignitionSpread = 0;
+    private double temperatureSpread = 0;
+    private double humiditySpread = 0;
+    private double windSpread = 0;
+    private double parameterSpread = 0;
+
+    /** Creates a scenario of unperturbed members that burn for the duration from the point. */
+    public Scenario(LatLng startPoint, Duration duration, int memberCount) {
+      this.startPoint = startPoint;
+      this.ticks = (int) duration.dividedBy(Simulator.DEFAULT_STEP_DURATION);
+      this.memberCount = memberCount;
+    }
+
+    private Scenario(Scenario origin) {
+      this.startPoint = origin.startPoint;
+      this.ticks = origin.ticks;
+      this.memberCount = origin.memberCount;
+      this.seed = origin.seed;
+      this.ignitionSpread = origin.ignitionSpread;
+      this.temperatureSpread = origin.temperatureSpread;
+      this.humiditySpread = origin.humiditySpread;
+      this.windSpread = origin.windSpread;
+      this.parameterSpread = origin.parameterSpread;
+    }
+
+    /** Sets the seed that makes the perturbations of every member reproducible. */
+    public Scenario withSeed(long seed) {
+      Scenario scenario = new Scenario(this);
+      scenario.seed = seed;
+      return scenario;
+    }
+
+    /** Sets the standard deviation of the ignition point in cells along each axis. */
+    public Scenario withIgnitionSpread(double ignitionSpread) {
+      Scenario scenario = new Scenario(this);
+      scenario.ignitionSpread = ignitionSpread;
+      return scenario;
+    }
+
+    /** Sets the standard deviation of the air temperature offset in °C. */
+    public Scenario withTemperatureSpread(double temperatureSpread) {
+      Scenario scenario = new Scenario(this);
+      scenario.temperatureSpread = temperatureSpread;
+      return scenario;
+    }
+
+    /** Sets the standard deviation of the relative air humidity offset. */
+    public Scenario withHumiditySpread(double humiditySpread) {
+      Scenario scenario = new Scenario(this);
+      scenario.humiditySpread = humiditySpread;
+      return scenario;
+    }
+
+    /** Sets the standard deviation of the offset of each wind component in m/s. */
+    public Scenario withWindSpread(double windSpread) {
+      Scenario scenario = new Scenario(this);
+      scenario.windSpread = windSpread;
+      return scenario;
+    }
+
+    /**
+     * Sets the standard deviation of the logarithm of the factors of the combustion, emission,
+     * propagation and wind intensities.
+     */
+    public Scenario withParameterSpread(double parameterSpread) {
+      Scenario scenario = new Scenario(this);
+      scenario.parameterSpread = parameterSpread;
+      return scenario;
+    }
+  }
+
+  private static final class PerturbedWeatherService implements WeatherService {
+    private final WeatherService weatherService;
+    private final double temperatureOffset;
+    private final double humidityOffset;
+    private final double windXOffset;
+    private final double windYOffset;
+
+    private PerturbedWeatherService(
+        WeatherService weatherService,
+        double temperatureOffset,
+        double humidityOffset,
+        double windXOffset,
+        double windYOffset) {
+      this.weatherService = weatherService;
+      this.temperatureOffset = temperatureOffset;
+      this.humidityOffset = humidityOffset;
+      this.windXOffset = windXOffset;
+      this.windYOffset = windYOffset;
+    }
+
+    @Override
+    public Optional<Weather> getWeather(LatLng point, Instant date) {
+      return weatherService
+          .getWeather(point, date)
+          .map(
+              weather ->
+                  new Weather(
+                      weather.getAirTemperature() + temperatureOffset,
+                      Math.min(Math.max(weather.getAirHumidity() + humidityOffset, 0), 1),
+                      weather.getWindX() + windXOffset,
+                      weather.getWindY() + windYOffset));
+    }
+  }
+}
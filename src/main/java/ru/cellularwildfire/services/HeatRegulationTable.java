@@ -0,0 +1,107 @@
+package ru.cellularwildfire.services;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Precomputed results of the iterative heat regulation.
+ *
+ * <p>Air temperature is stored as a whole number of degrees, so the table has a row of regulated
+ * heats for every air temperature. Rows are built on first use and linearly interpolated by heat.
+ *
+ * <p>The iterative regulation is discontinuous where its iteration pattern changes. Table intervals
+ * whose bounds differ in the pattern, or whose middle deviates from the interpolation by more than
+ * {@link #MAX_ERROR}, are delegated to the iterative regulation.
+ */
+public final class HeatRegulationTable {
+  /** Absolute deviation in degrees allowed between the table and the iterative regulation. */
+  public static final double MAX_ERROR = 0.01;
+
+  private static final double HEAT_STEP = 0.5;
+  private static final int AIR_TEMPERATURES = 1 << Byte.SIZE;
+
+  private final double minHeat;
+  private final double maxHeat;
+  private final int heatSteps;
+  private final IterativeRegulation regulation;
+  private final AtomicReferenceArray<Row> rows = new AtomicReferenceArray<>(AIR_TEMPERATURES);
+
+  public HeatRegulationTable(double minHeat, double maxHeat, IterativeRegulation regulation) {
+    this.minHeat = minHeat;
+    this.maxHeat = maxHeat;
+    this.heatSteps = (int) Math.ceil((maxHeat - minHeat) / HEAT_STEP);
+    this.regulation = regulation;
+  }
+
+  public double regulate(double heat, double airTemperature) {
+    int rowIndex = (int) airTemperature - Byte.MIN_VALUE;
+    if (heat < minHeat
+        || maxHeat < heat
+        || rowIndex < 0
+        || AIR_TEMPERATURES <= rowIndex
+        || rowIndex + Byte.MIN_VALUE != airTemperature) {
+      return regulation.regulate(heat, airTemperature, null);
+    }
+    Row row = getRow(rowIndex);
+    double position = (heat - minHeat) / HEAT_STEP;
+    int index = Math.min((int) position, heatSteps - 1);
+    if (row.irregularIntervals.get(index)) {
+      return regulation.regulate(heat, airTemperature, null);
+    }
+    double fraction = position - index;
+    double[] heats = row.regulatedHeats;
+    return heats[index] + (heats[index + 1] - heats[index]) * fraction;
+  }
+
+  private Row getRow(int rowIndex) {
+    Row row = rows.get(rowIndex);
+    if (row == null) {
+      // Concurrently built rows are identical, so any of them can be kept.
+      rows.compareAndSet(rowIndex, null, createRow(rowIndex + Byte.MIN_VALUE));
+      row = rows.get(rowIndex);
+    }
+    return row;
+  }
+
+  private Row createRow(double airTemperature) {
+    double[] regulatedHeats = new double[heatSteps + 1];
+    long[] patterns = new long[heatSteps + 1];
+    long[] pattern = new long[1];
+    for (int index = 0; index <= heatSteps; index++) {
+      regulatedHeats[index] =
+          regulation.regulate(minHeat + index * HEAT_STEP, airTemperature, pattern);
+      patterns[index] = pattern[0];
+    }
+    BitSet irregularIntervals = new BitSet(heatSteps);
+    for (int index = 0; index < heatSteps; index++) {
+      double middleHeat =
+          regulation.regulate(minHeat + (index + 0.5) * HEAT_STEP, airTemperature, pattern);
+      double interpolatedHeat = (regulatedHeats[index] + regulatedHeats[index + 1]) / 2;
+      if (patterns[index] != patterns[index + 1]
+          || pattern[0] != patterns[index]
+          || Math.abs(interpolatedHeat - middleHeat) > MAX_ERROR) {
+        irregularIntervals.set(index);
+      }
+    }
+    return new Row(regulatedHeats, irregularIntervals);
+  }
+
+  @FunctionalInterface
+  public interface IterativeRegulation {
+    /**
+     * Returns the regulated heat and writes the pattern of the performed iterations to the first
+     * element of the pattern array if it is present.
+     */
+    double regulate(double heat, double airTemperature, long[] pattern);
+  }
+
+  private static final class Row {
+    private final double[] regulatedHeats;
+    private final BitSet irregularIntervals;
+
+    private Row(double[] regulatedHeats, BitSet irregularIntervals) {
+      this.regulatedHeats = regulatedHeats;
+      this.irregularIntervals = irregularIntervals;
+    }
+  }
+}
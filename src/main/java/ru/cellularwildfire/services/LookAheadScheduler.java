@@ -0,0 +1,135 @@
+package ru.cellularwildfire.services;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Computes steps of requested simulations ahead of the requests in the background.
+ *
+ * <p>Each simulation with pending look-ahead is coordinated by a virtual thread that submits its
+ * steps one by one to a fixed pool of platform threads, whose size is the global CPU budget of
+ * look-ahead, so that simulations share the pool and requests wait for at most one step being
+ * computed. Coordinators read the steps under the lock of the simulation, which is a {@link
+ * java.util.concurrent.locks.ReentrantLock} so that they wait for steps being computed without
+ * pinning their carrier threads. Look-ahead of a simulation stops once it is released, for example
+ * when evicted by {@link SimulationManager}, or idle for longer than the timeout, and resumes on the
+ * next request.
+ */
+public final class LookAheadScheduler {
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(10);
+
+  private final Simulator simulator;
+  private final int lookAheadTicks;
+  private final long idleTimeoutNanos;
+  private final ExecutorService stepExecutor;
+  private final Map<String, Target> targets = new HashMap<>();
+
+  /** Creates a scheduler that does nothing if the ticks to look ahead are not positive. */
+  public LookAheadScheduler(
+      Simulator simulator, int lookAheadTicks, int threads, Duration idleTimeout) {
+    this.simulator = simulator;
+    this.lookAheadTicks = lookAheadTicks;
+    this.idleTimeoutNanos = idleTimeout.toNanos();
+    this.stepExecutor =
+        0 < lookAheadTicks
+            ? Executors.newFixedThreadPool(
+                threads, Thread.ofPlatform().name("look-ahead-", 0).daemon().factory())
+            : null;
+  }
+
+  /** Schedules the steps up to the ticks to look ahead after the requested end tick. */
+  public void request(Simulation simulation, int endTick) {
+    if (stepExecutor == null) {
+      return;
+    }
+    synchronized (targets) {
+      if (stepExecutor.isShutdown()) {
+        return;
+      }
+      Target target = targets.get(simulation.getId());
+      if (target == null) {
+        target = new Target(simulation);
+        targets.put(simulation.getId(), target);
+        Target startedTarget = target;
+        target.coordinator = Thread.ofVirtual().start(() -> lookAhead(startedTarget));
+      }
+      target.endTick = Math.max(target.endTick, endTick + lookAheadTicks);
+      target.requestNanos = System.nanoTime();
+    }
+  }
+
+  /** Returns whether look-ahead of the simulation is in progress. */
+  public boolean isLookingAhead(String simulationId) {
+    synchronized (targets) {
+      return targets.containsKey(simulationId);
+    }
+  }
+
+  /**
+   * Stops look-ahead and waits up to the shutdown timeout for the steps being computed.
+   *
+   * <p>Coordinators are interrupted before queued steps are dropped, so that none of them keeps
+   * waiting for a step that will never run.
+   */
+  public void shutdown() {
+    if (stepExecutor == null) {
+      return;
+    }
+    synchronized (targets) {
+      stepExecutor.shutdown();
+      targets.values().forEach(target -> target.coordinator.interrupt());
+    }
+    stepExecutor.shutdownNow();
+    try {
+      stepExecutor.awaitTermination(SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void lookAhead(Target target) {
+    Simulation simulation = target.simulation;
+    try {
+      while (true) {
+        int nextTick = simulation.getSteps().size();
+        boolean isProgressing =
+            !simulation.isReleased()
+                && nextTick <= simulation.getTimeline().getLimitTicks()
+                && !simulation.getSteps().getLast().isFinal();
+        synchronized (targets) {
+          if (!isProgressing
+              || target.endTick < nextTick
+              || idleTimeoutNanos < System.nanoTime() - target.requestNanos) {
+            targets.remove(simulation.getId(), target);
+            return;
+          }
+        }
+        stepExecutor.submit(() -> simulator.progressSimulation(simulation, nextTick)).get();
+      }
+    } catch (InterruptedException | ExecutionException | RejectedExecutionException exception) {
+      // The look-ahead stops, the next request computes the steps itself.
+    } finally {
+      synchronized (targets) {
+        targets.remove(simulation.getId(), target);
+      }
+    }
+  }
+
+  private static final class Target {
+    private final Simulation simulation;
+    private Thread coordinator = null;
+    private int endTick = 0;
+    private long requestNanos = 0;
+
+    private Target(Simulation simulation) {
+      this.simulation = simulation;
+    }
+  }
+}
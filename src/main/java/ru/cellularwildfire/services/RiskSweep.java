@@ -0,0 +1,131 @@
+package ru.cellularwildfire.services;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Raster;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Regional burn-risk sweep: simulates a fire from every cell of a region for a duration and
+ * rasterizes the damaged hectares by ignition cell.
+ *
+ * <p>The terrain of the region is loaded once into a cache shared by all simulations of a sweep
+ * with the weather, and the simulations run on a fork-join pool, each refining its steps serially.
+ * Simulations are created and started as by {@link Simulator} and released once measured.
+ */
+public final class RiskSweep {
+  private static final double NO_DATA = -9999;
+
+  private final TerrainService terrainService;
+  private final WeatherService weatherService;
+  private final AutomatonAlgorithm algorithm;
+  private final Simulator.Settings settings;
+  private final int parallelism;
+
+  public RiskSweep(
+      TerrainService terrainService,
+      WeatherService weatherService,
+      AutomatonAlgorithm algorithm,
+      Simulator.Settings settings,
+      int parallelism) {
+    this.terrainService = terrainService;
+    this.weatherService = weatherService;
+    this.algorithm = algorithm;
+    this.settings = settings.withParallelism(1);
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Writes the raster in the ESRI ASCII grid format with the extent in degrees and rows from the
+   * north down.
+   */
+  public static void writeAsciiGrid(Raster raster, Grid grid, Writer writer) throws IOException {
+    writer.write("ncols %d%n".formatted(raster.getWidth()));
+    writer.write("nrows %d%n".formatted(raster.getHeight()));
+    double cellSize = 1.0 / grid.getScale();
+    writer.write("xllcorner %s%n".formatted(formatValue(raster.getOrigin().getX() * cellSize)));
+    writer.write("yllcorner %s%n".formatted(formatValue(raster.getOrigin().getY() * cellSize)));
+    writer.write("cellsize %s%n".formatted(formatValue(cellSize)));
+    writer.write("NODATA_value %s%n".formatted(formatValue(NO_DATA)));
+    for (int y = raster.getHeight() - 1; 0 <= y; y--) {
+      StringBuilder row = new StringBuilder();
+      for (int x = 0; x < raster.getWidth(); x++) {
+        row.append(x == 0 ? "" : " ").append(formatValue(raster.getValue(x, y)));
+      }
+      writer.write(row.append(System.lineSeparator()).toString());
+    }
+    writer.flush();
+  }
+
+  private static String formatValue(double value) {
+    return String.format(Locale.ROOT, "%.6g", value);
+  }
+
+  private static double estimateDamagedHectares(Simulation simulation) {
+    double area = 0;
+    for (Cell cell : simulation.getSteps().getLast().getCells()) {
+      if (cell.getState().isDamaged()) {
+        area += simulation.getGrid().estimateCellArea(cell.getCoordinates(), cell.getSpan());
+      }
+    }
+    return area / 10000;
+  }
+
+  /**
+   * Returns the damaged hectares of fires that burn for the duration from each cell of the region
+   * between the corners, the raster origin is the cell of the lower corner.
+   */
+  public Raster sweep(LatLng lowerCorner, LatLng upperCorner, Duration duration) {
+    Grid grid = new Grid(Simulator.DEFAULT_GRID_SCALE);
+    Coordinates lowerCoordinates = grid.coordinatesOf(lowerCorner);
+    Coordinates upperCoordinates = grid.coordinatesOf(upperCorner);
+    int width = upperCoordinates.getX() - lowerCoordinates.getX() + 1;
+    int height = upperCoordinates.getY() - lowerCoordinates.getY() + 1;
+    int ticks = (int) duration.dividedBy(Simulator.DEFAULT_STEP_DURATION);
+    float[] damagedHectares = new float[width * height];
+
+    CachedTerrainService sharedTerrainService = new CachedTerrainService(terrainService, grid);
+    Simulator simulator =
+        new Simulator(
+            sharedTerrainService,
+            new CachedWeatherService(weatherService, grid),
+            algorithm,
+            settings);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(() -> sharedTerrainService.preload(lowerCoordinates, upperCoordinates)).join();
+      pool.submit(
+              () ->
+                  IntStream.range(0, width * height)
+                      .parallel()
+                      .forEach(
+                          index -> {
+                            Coordinates startCoordinates =
+                                new Coordinates(
+                                    lowerCoordinates.getX() + index % width,
+                                    lowerCoordinates.getY() + index / width);
+                            Simulation simulation =
+                                simulator.createSimulation(grid.pointOf(startCoordinates));
+                            if (simulator.tryStartSimulation(simulation)) {
+                              simulator.progressSimulation(simulation, ticks);
+                              damagedHectares[index] = (float) estimateDamagedHectares(simulation);
+                            } else {
+                              damagedHectares[index] = (float) NO_DATA;
+                            }
+                            simulation.release();
+                          }))
+          .join();
+    } finally {
+      pool.shutdown();
+    }
+    return new Raster(lowerCoordinates, width, height, damagedHectares);
+  }
+}
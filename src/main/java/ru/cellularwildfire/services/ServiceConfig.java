@@ -1,10 +1,14 @@
 package ru.cellularwildfire.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Schedulers;
 import ru.cellularwildfire.data.MapFragment;
 import ru.cellularwildfire.data.MapLoader;
 import ru.cellularwildfire.data.Mosaic;
@@ -12,7 +16,7 @@ import ru.cellularwildfire.services.weatherapi.WeatherApiService;
 
 @Configuration
 public class ServiceConfig {
-  private static final int SIMULATION_MANAGER_CAPACITY = 20;
+  private static final int SIMULATION_MANAGER_CAPACITY = 200;
   private static final int FORECASTED_WEATHER_DAYS = 3;
 
   @Value("${WEATHER_API_KEY:}")
@@ -24,6 +28,51 @@ public class ServiceConfig {
   @Value("${SIMULATOR_STEP_LIMIT_MILLI:-1}")
   private Integer simulatorStepLimitMilli;
 
+  @Value("${SIMULATOR_PARALLELISM:1}")
+  private Integer simulatorParallelism;
+
+  @Value("${SIMULATOR_DETERMINISTIC:true}")
+  private Boolean simulatorDeterministic;
+
+  @Value("${SIMULATOR_RENDER_CELL_BUDGET:0}")
+  private Integer simulatorRenderCellBudget;
+
+  @Value("${SIMULATOR_KERNEL:SCALAR}")
+  private AutomatonAlgorithm.Kernel simulatorKernel;
+
+  @Value("${SIMULATOR_HISTORY_BUDGET_MB:0}")
+  private Integer simulatorHistoryBudgetMb;
+
+  @Value("${SIMULATOR_FRAME_STORAGE:HEAP}")
+  private Simulator.FrameStorage simulatorFrameStorage;
+
+  @Value("${SIMULATOR_FRAME_DIRECTORY:}")
+  private String simulatorFrameDirectory;
+
+  @Value("${SIMULATOR_LOOK_AHEAD_TICKS:0}")
+  private Integer simulatorLookAheadTicks;
+
+  @Value("${SIMULATOR_LOOK_AHEAD_THREADS:1}")
+  private Integer simulatorLookAheadThreads;
+
+  @Value("${SIMULATOR_LOOK_AHEAD_IDLE_SECONDS:60}")
+  private Integer simulatorLookAheadIdleSeconds;
+
+  @Value("${STEP_PAYLOAD_CACHE_MB:64}")
+  private Integer stepPayloadCacheMb;
+
+  @Value("${TILE_RENDER_THREADS:2}")
+  private Integer tileRenderThreads;
+
+  @Value("${TILE_RENDER_QUEUE:256}")
+  private Integer tileRenderQueue;
+
+  @Value("${TILE_CACHE_MB:64}")
+  private Integer tileCacheMb;
+
+  @Value("${CELL_INDEX_CACHE_MB:128}")
+  private Integer cellIndexCacheMb;
+
   public static TerrainService terrainService() {
     List<MapRegion> mapRegions =
         List.of(
@@ -64,8 +113,49 @@ public class ServiceConfig {
 
   @Bean
   public Simulator simulator() {
-    return new Simulator(
-        terrainService(), weatherService(), new AutomatonAlgorithm(), simulatorStepLimitMilli);
+    Simulator.Settings settings =
+        new Simulator.Settings()
+            .withLimitStepMilli(simulatorStepLimitMilli)
+            .withParallelism(simulatorParallelism)
+            .withDeterministic(simulatorDeterministic)
+            .withRenderCellBudget(simulatorRenderCellBudget)
+            .withKernel(simulatorKernel)
+            .withHistoryBudget(simulatorHistoryBudgetMb * 1024L * 1024L)
+            .withFrameStorage(simulatorFrameStorage);
+    if (!simulatorFrameDirectory.isEmpty()) {
+      settings = settings.withFrameDirectory(Path.of(simulatorFrameDirectory));
+    }
+    return new Simulator(terrainService(), weatherService(), new AutomatonAlgorithm(), settings);
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public LookAheadScheduler lookAheadScheduler(Simulator simulator) {
+    return new LookAheadScheduler(
+        simulator,
+        simulatorLookAheadTicks,
+        simulatorLookAheadThreads,
+        Duration.ofSeconds(simulatorLookAheadIdleSeconds));
+  }
+
+  @Bean
+  public StepPublisher stepPublisher(Simulator simulator) {
+    return new StepPublisher(simulator, Schedulers.boundedElastic());
+  }
+
+  @Bean
+  public StepPayloadCache stepPayloadCache(ObjectMapper objectMapper) {
+    return new StepPayloadCache(objectMapper, stepPayloadCacheMb * 1024L * 1024L);
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public TileRenderer tileRenderer(CellIndexCache cellIndexCache) {
+    return new TileRenderer(
+        cellIndexCache, tileRenderThreads, tileRenderQueue, tileCacheMb * 1024L * 1024L);
+  }
+
+  @Bean
+  public CellIndexCache cellIndexCache() {
+    return new CellIndexCache(cellIndexCacheMb * 1024L * 1024L);
   }
 
   public WeatherService weatherService() {
@@ -0,0 +1,107 @@
+package ru.cellularwildfire.services;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Keeps values derived from simulations, for example encoded steps, in least recently used order
+ * within a byte budget, measuring values with the weigher. Values of released simulations, for
+ * example evicted by {@link SimulationManager}, are dropped on the next write to the cache.
+ */
+final class SimulationCache<V> {
+  private final long byteBudget;
+  private final ToLongFunction<V> weigher;
+  private final Map<Key, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Set<Simulation> simulations = new HashSet<>();
+  private long cachedBytes = 0;
+
+  /** Creates a cache that keeps nothing if the byte budget is not positive. */
+  SimulationCache(long byteBudget, ToLongFunction<V> weigher) {
+    this.byteBudget = byteBudget;
+    this.weigher = weigher;
+  }
+
+  static SimulationCache<byte[]> ofBytes(long byteBudget) {
+    return new SimulationCache<>(byteBudget, bytes -> bytes.length);
+  }
+
+  boolean isEnabled() {
+    return 0 < byteBudget;
+  }
+
+  synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  synchronized V get(Simulation simulation, Object key) {
+    return entries.get(new Key(simulation.getId(), key));
+  }
+
+  /** Keeps the value unless the key already has a value or the simulation is released. */
+  synchronized void put(Simulation simulation, Object key, V value) {
+    long bytes = weigher.applyAsLong(value);
+    if (!isEnabled() || byteBudget < bytes) {
+      return;
+    }
+    dropReleasedSimulations();
+    if (!simulation.isReleased()
+        && entries.putIfAbsent(new Key(simulation.getId(), key), value) == null) {
+      simulations.add(simulation);
+      cachedBytes += bytes;
+      evictOverBudget();
+    }
+  }
+
+  private void dropReleasedSimulations() {
+    Set<String> releasedIds = new HashSet<>();
+    simulations.removeIf(
+        simulation -> simulation.isReleased() && releasedIds.add(simulation.getId()));
+    if (releasedIds.isEmpty()) {
+      return;
+    }
+    Iterator<Map.Entry<Key, V>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, V> entry = iterator.next();
+      if (releasedIds.contains(entry.getKey().simulationId)) {
+        cachedBytes -= weigher.applyAsLong(entry.getValue());
+        iterator.remove();
+      }
+    }
+  }
+
+  private void evictOverBudget() {
+    Iterator<V> iterator = entries.values().iterator();
+    while (byteBudget < cachedBytes && iterator.hasNext()) {
+      cachedBytes -= weigher.applyAsLong(iterator.next());
+      iterator.remove();
+    }
+  }
+
+  private static final class Key {
+    private final String simulationId;
+    private final Object key;
+
+    private Key(String simulationId, Object key) {
+      this.simulationId = simulationId;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key otherKey
+          && simulationId.equals(otherKey.simulationId)
+          && key.equals(otherKey.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(simulationId, key);
+    }
+  }
+}
@@ -26,19 +26,27 @@ public final class SimulationManager {
   }
 
   public void addSimulation(Simulation simulation) {
+    Simulation evictedSimulation = null;
     synchronized (simulations) {
       if (capacity <= simulations.size()) {
         simulations.sort(Comparator.comparing(s -> accessMoments.get(s.getId())));
-        simulations.remove(0);
+        evictedSimulation = simulations.remove(0);
       }
       simulations.add(simulation);
       accessMoments.put(simulation.getId(), accessIndex++);
     }
+    // Release waits for the simulation lock, which must not hold back other simulations.
+    if (evictedSimulation != null) {
+      evictedSimulation.release();
+    }
   }
 
   public void removeSimulation(String id) {
+    List<Simulation> removedSimulations = new ArrayList<>();
     synchronized (simulations) {
-      simulations.removeIf(simulation -> simulation.getId().equals(id));
+      simulations.removeIf(
+          simulation -> simulation.getId().equals(id) && removedSimulations.add(simulation));
     }
+    removedSimulations.forEach(Simulation::release);
   }
 }
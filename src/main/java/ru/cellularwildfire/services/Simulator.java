@@ -1,10 +1,13 @@
 package ru.cellularwildfire.services;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import org.springframework.stereotype.Service;
 import ru.cellularwildfire.models.*;
 
@@ -15,15 +18,27 @@ public final class Simulator {
   public static final Duration DEFAULT_LIMIT_DURATION = Duration.ofDays(7);
   public static final double INITIAL_HEAT = 1000;
   public static final double SIGNIFICANT_FUEL = 0.01F;
+  private static final Path DEFAULT_FRAME_DIRECTORY =
+      Path.of(System.getProperty("java.io.tmpdir"), "cellular-wildfire");
+  private static final String OFF_HEAP_FRAME_STORE_CLASS =
+      "ru.cellularwildfire.models.OffHeapFrameStore";
 
   private final TerrainService terrainService;
   private final WeatherService weatherService;
   private final AutomatonAlgorithm algorithm;
   private final Integer limitStepMilli;
+  private final Engine engine;
+  private final ForkJoinPool stepPool;
+  private final AutomatonKernels kernels;
+  private final boolean deterministic;
+  private final int renderCellBudget;
+  private final long historyBudget;
+  private final FrameStorage frameStorage;
+  private final Path frameDirectory;
 
   public Simulator(
       TerrainService terrainService, WeatherService weatherService, AutomatonAlgorithm algorithm) {
-    this(terrainService, weatherService, algorithm, -1);
+    this(terrainService, weatherService, algorithm, new Settings());
   }
 
   public Simulator(
@@ -31,33 +46,93 @@ public final class Simulator {
       WeatherService weatherService,
       AutomatonAlgorithm algorithm,
       Integer limitStepMilli) {
+    this(
+        terrainService,
+        weatherService,
+        algorithm,
+        new Settings().withLimitStepMilli(limitStepMilli));
+  }
+
+  public Simulator(
+      TerrainService terrainService,
+      WeatherService weatherService,
+      AutomatonAlgorithm algorithm,
+      Settings settings) {
     this.terrainService = terrainService;
     this.weatherService = weatherService;
     this.algorithm = algorithm;
-    this.limitStepMilli = limitStepMilli;
+    this.limitStepMilli = settings.limitStepMilli;
+    this.engine = settings.engine;
+    this.stepPool = settings.parallelism > 1 ? new ForkJoinPool(settings.parallelism) : null;
+    this.kernels = algorithm.createKernels(settings.kernel);
+    this.deterministic = settings.deterministic;
+    this.renderCellBudget = settings.renderCellBudget;
+    this.historyBudget = settings.historyBudget;
+    this.frameStorage = settings.frameStorage;
+    this.frameDirectory = settings.frameDirectory;
   }
 
   public Simulation createSimulation(LatLng startPoint) {
     return new Simulation(
         new Simulation.MarkedGrid(DEFAULT_GRID_SCALE, startPoint),
-        new Simulation.Timeline(Instant.now(), DEFAULT_STEP_DURATION, DEFAULT_LIMIT_DURATION));
+        new Simulation.Timeline(Instant.now(), DEFAULT_STEP_DURATION, DEFAULT_LIMIT_DURATION),
+        createFrameStore());
+  }
+
+  private FrameStore createFrameStore() {
+    return switch (frameStorage) {
+      case HEAP -> new HeapFrameStore();
+      case MAPPED -> new MappedFrameStore(frameDirectory);
+      case OFF_HEAP -> {
+        try {
+          yield (FrameStore)
+              Class.forName(OFF_HEAP_FRAME_STORE_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError exception) {
+          yield new HeapFrameStore();
+        }
+      }
+    };
   }
 
   public boolean tryStartSimulation(Simulation simulation) {
     Coordinates startCoordinates = simulation.getGrid().getStartCoordinates();
     LatLng startPoint = simulation.getGrid().pointOf(startCoordinates);
 
-    Cell.State initialState = new Cell.State(determineFuel(startPoint), INITIAL_HEAT);
+    double fuel = determineFuel(startPoint);
     try {
-      Cell.Factors factors = determineFactors(startPoint, simulation.getTimeline().getStartDate());
+      FactorPool factorPool = simulation.getFactorPool();
+      int factorId =
+          determineFactorId(startPoint, simulation.getTimeline().getStartDate(), factorPool);
 
-      Cell initialCell = new Cell(startCoordinates, initialState, factors);
-
-      Simulation.Step initialStep = new Simulation.Step();
-      if (!initialCell.isBurning()) {
+      if (0 < renderCellBudget) {
+        simulation.getSteps().useRenderCellBudget(simulation.getGrid(), renderCellBudget);
+      }
+      Simulation.Step initialStep;
+      if (engine == Engine.COLUMNAR) {
+        if (0 < historyBudget) {
+          simulation
+              .getSteps()
+              .useCheckpoints(
+                  (lastColumns, factorSlots, factorIds) ->
+                      replayStep(simulation, lastColumns, factorSlots, factorIds),
+                  historyBudget,
+                  simulation.getTimeline().getLimitTicks());
+        }
+        simulation.getLayout().addSlot(simulation.getGrid(), startCoordinates, fuel);
+        StepColumns initialColumns = new StepColumns(simulation.getLayout(), factorPool);
+        initialColumns.addCell(INITIAL_HEAT, factorId);
+        initialColumns.setActiveSlots(new int[] {0});
+        initialStep = new Simulation.Step(initialColumns);
+      } else {
+        Cell.State initialState = new Cell.State(fuel, INITIAL_HEAT);
+        initialStep = new Simulation.Step();
+        initialStep
+            .getLiveCells()
+            .add(new Cell(startCoordinates, initialState, factorPool.get(factorId)));
+      }
+      if (!initialStep.hasBurningCells()) {
         initialStep.markAsFinal();
       }
-      initialStep.getCells().add(initialCell);
       simulation.getSteps().add(initialStep);
       return true;
     } catch (SimulatorException exception) {
@@ -66,43 +141,57 @@ public final class Simulator {
   }
 
   public void progressSimulation(Simulation simulation, int endTick) {
-    synchronized (simulation.getId()) {
+    simulation.getLock().lock();
+    try {
       int limitTicks = simulation.getTimeline().getLimitTicks();
-      while (!simulation.hasStep(endTick)
+      while (!simulation.isReleased()
+          && !simulation.hasStep(endTick)
           && !simulation.getSteps().getLast().isFinal()
           && simulation.getSteps().size() <= limitTicks) {
         try {
           Instant startTime = Instant.now();
-          Simulation.Step draftStep = createDraftStep(simulation);
-          algorithm.refineDraftStep(draftStep, simulation);
-          simulation.getSteps().add(draftStep);
-          if (draftStep.getCells().stream().noneMatch(Cell::isBurning)) {
-            draftStep.markAsFinal();
+          Simulation.Step draftStep;
+          if (engine == Engine.COLUMNAR) {
+            StepColumns draftColumns = createDraftColumns(simulation);
+            refineDraftColumns(draftColumns, simulation);
+            draftStep = new Simulation.Step(draftColumns);
+          } else {
+            draftStep = createDraftStep(simulation);
+            algorithm.refineDraftStep(draftStep, simulation);
           }
+          // Finality is decided before the step is added, so that added steps stay unchanged.
           long elapsedMilli = Instant.now().toEpochMilli() - startTime.toEpochMilli();
-          if (0 < limitStepMilli && limitStepMilli < elapsedMilli) {
+          if (!draftStep.hasBurningCells()
+              || 0 < limitStepMilli && limitStepMilli < elapsedMilli) {
             draftStep.markAsFinal();
           }
+          simulation.getSteps().add(draftStep);
         } catch (SimulatorException exception) {
+          // Values derived from the last step are not cached until it is final.
           simulation.getSteps().getLast().markAsFinal();
         }
       }
+    } finally {
+      simulation.getLock().unlock();
     }
   }
 
   private Simulation.Step createDraftStep(Simulation simulation) throws SimulatorException {
     Grid grid = simulation.getGrid();
-    Simulation.Step draftStep = new Simulation.Step();
     Simulation.Step lastStep = simulation.getSteps().getLast();
-    Duration period =
-        simulation.getTimeline().getStepDuration().multipliedBy(simulation.getSteps().size());
-    Instant date = simulation.getTimeline().getStartDate().plus(period);
+    FactorPool factorPool = simulation.getFactorPool();
+    BurnedArea burnedArea = simulation.getBurnedArea();
+    Instant date = determineDraftStepDate(simulation);
 
-    for (Cell cell : lastStep.getCells()) {
-      Cell.Factors factors = determineFactors(grid.pointOf(cell.getCoordinates()), date);
-      if (factors.equals(cell.getFactors())) {
-        factors = cell.getFactors();
+    List<Cell> clonedCells = new ArrayList<>(lastStep.getLiveCells().size());
+    for (Cell cell : lastStep.getLiveCells()) {
+      if (isRetirable(cell, burnedArea, grid)) {
+        burnedArea.retire(cell, factorPool.idOf(cell.getFactors()));
+        continue;
       }
+      // Factors are interned, so unchanged factors keep their instance.
+      Cell.Factors factors =
+          factorPool.get(determineFactorId(grid.pointOf(cell.getCoordinates()), date, factorPool));
       Cell.State cellState = cell.getState();
       Cell.State draftCellState =
           new Cell.State(
@@ -112,10 +201,15 @@ public final class Simulator {
       Cell draftCell = new Cell(cell.getCoordinates(), draftCellState, factors);
       draftCell.setTwin(cell);
       cell.setTwin(draftCell);
-      draftStep.getCells().add(draftCell);
+      clonedCells.add(draftCell);
     }
+    Simulation.Step draftStep = new Simulation.Step(burnedArea, factorPool);
+    draftStep.getLiveCells().addAll(clonedCells);
 
-    for (Cell cell : lastStep.getCells()) {
+    for (Cell cell : lastStep.getLiveCells()) {
+      if (cell.getTwin() == null) {
+        continue;
+      }
       for (int offsetX = -1; offsetX <= 1; offsetX++) {
         for (int offsetY = -1; offsetY <= 1; offsetY++) {
           if (offsetX == 0 && offsetY == 0 || cell.getNeighbor(offsetX, offsetY) == null) {
@@ -127,14 +221,18 @@ public final class Simulator {
       }
     }
 
-    draftStep.getCells().forEach(cell -> cell.setTwin(null));
+    draftStep.getLiveCells().forEach(cell -> cell.setTwin(null));
 
-    Map<Coordinates, Cell> draftCellMap = new HashMap<>(draftStep.getCells().size());
-    draftStep.getCells().forEach(cell -> draftCellMap.put(cell.getCoordinates(), cell));
+    List<Cell> draftCells = draftStep.getLiveCells();
+    LongIndexMap draftCellIndex = simulation.getDraftCellIndex();
+    draftCellIndex.clear();
+    for (int index = 0; index < draftCells.size(); index++) {
+      draftCellIndex.put(draftCells.get(index).getCoordinates().pack(), index);
+    }
 
-    for (Cell previousCell : lastStep.getCells()) {
+    for (Cell previousCell : lastStep.getLiveCells()) {
       Cell cell = previousCell.getTwin();
-      if (!cell.isBurning()) {
+      if (cell == null || !cell.isBurning()) {
         continue;
       }
       for (int offsetX = -1; offsetX <= 1; offsetX++) {
@@ -148,31 +246,37 @@ public final class Simulator {
             // Cell neighborhood through the poles is not expected.
             continue;
           }
+          if (burnedArea.contains(neighborCoordinates)) {
+            continue;
+          }
           LatLng neighborPoint = grid.pointOf(neighborCoordinates);
           double fuel = determineFuel(neighborPoint);
           if (fuel < SIGNIFICANT_FUEL) {
             continue;
           }
-          Cell.Factors factors = determineFactors(neighborPoint, date);
-          if (factors.equals(cell.getFactors())) {
-            factors = cell.getFactors();
-          }
+          Cell.Factors factors =
+              factorPool.get(determineFactorId(neighborPoint, date, factorPool));
           Cell.State neighborState = new Cell.State(fuel, factors.getAirTemperature());
           Cell neighbor = new Cell(neighborCoordinates, neighborState, factors);
 
           for (int dX = -1; dX <= 1; dX++) {
             for (int dY = -1; dY <= 1; dY++) {
               Coordinates otherCoordinates = grid.getNeighbor(neighborCoordinates, dX, dY);
-              if (draftCellMap.containsKey(otherCoordinates)) {
-                Cell otherCell = draftCellMap.get(otherCoordinates);
+              if (neighborCoordinates.getY() == otherCoordinates.getY() && dY != 0) {
+                // Cell neighborhood through the poles is not expected.
+                continue;
+              }
+              int otherIndex = draftCellIndex.get(otherCoordinates.pack());
+              if (otherIndex != LongIndexMap.NO_INDEX) {
+                Cell otherCell = draftCells.get(otherIndex);
                 neighbor.setNeighbor(dX, dY, otherCell);
                 otherCell.setNeighbor(-dX, -dY, neighbor);
               }
             }
           }
 
-          draftStep.getCells().add(neighbor);
-          draftCellMap.put(neighbor.getCoordinates(), neighbor);
+          draftCellIndex.put(neighbor.getCoordinates().pack(), draftCells.size());
+          draftCells.add(neighbor);
         }
       }
     }
@@ -180,12 +284,207 @@ public final class Simulator {
     return draftStep;
   }
 
-  private Cell.Factors determineFactors(LatLng point, Instant date) throws SimulatorException {
+  /**
+   * Checks whether the cell has burned out and cooled down among burned-out cells. No burning cell
+   * can reach such a cell anymore, so it can be retired without affecting other cells.
+   */
+  private boolean isRetirable(Cell cell, BurnedArea burnedArea, Grid grid) {
+    if (cell.getState().getCumulativeCombustionRate() < Cell.CUMULATIVE_COMBUSTION_RATE_THRESHOLD
+        || !algorithm.hasSettledHeat(cell)) {
+      return false;
+    }
+    for (int offsetX = -1; offsetX <= 1; offsetX++) {
+      for (int offsetY = -1; offsetY <= 1; offsetY++) {
+        if (offsetX == 0 && offsetY == 0) {
+          continue;
+        }
+        Cell neighbor = cell.getNeighbor(offsetX, offsetY);
+        boolean isBurnedOut =
+            neighbor == null
+                ? burnedArea.contains(grid.getNeighbor(cell.getCoordinates(), offsetX, offsetY))
+                : Cell.CUMULATIVE_COMBUSTION_RATE_THRESHOLD
+                    <= neighbor.getState().getCumulativeCombustionRate();
+        if (!isBurnedOut) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the slot is retirable the way {@link #isRetirable(Cell, BurnedArea, Grid)}
+   * checks a cell. Neighbors are read from the columns only, so that a replayed step retires the
+   * same slots.
+   */
+  private boolean isRetirable(StepColumns columns, int slot) {
+    if (columns.getCumulativeCombustionRate(slot) < Cell.CUMULATIVE_COMBUSTION_RATE_THRESHOLD
+        || !algorithm.hasSettledHeat(columns, slot)) {
+      return false;
+    }
+    for (int offsetX = -1; offsetX <= 1; offsetX++) {
+      for (int offsetY = -1; offsetY <= 1; offsetY++) {
+        if (offsetX == 0 && offsetY == 0) {
+          continue;
+        }
+        int neighborSlot = columns.getLayout().getNeighbor(slot, offsetX, offsetY);
+        if (neighborSlot == CellLayout.NO_SLOT
+            || columns.size() <= neighborSlot
+            || columns.getCumulativeCombustionRate(neighborSlot)
+                < Cell.CUMULATIVE_COMBUSTION_RATE_THRESHOLD) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private StepColumns createDraftColumns(Simulation simulation) throws SimulatorException {
+    Grid grid = simulation.getGrid();
+    CellLayout layout = simulation.getLayout();
+    FactorPool factorPool = simulation.getFactorPool();
+    BurnedArea burnedArea = simulation.getBurnedArea();
+    StepColumns draftColumns = simulation.getSteps().getLast().getColumns().orElseThrow().copy();
+    Instant date = determineDraftStepDate(simulation);
+
+    // Cells outside the active front are frozen and keep their state and factors. Retired cells
+    // leave the front for good since no burning cell neighbors them.
+    int[] lastActiveSlots = draftColumns.getActiveSlots();
+    BitSet activeSlots = new BitSet(draftColumns.size());
+    for (int slot : lastActiveSlots) {
+      if (isRetirable(draftColumns, slot)) {
+        burnedArea.retire(layout.getCoordinates(slot));
+        continue;
+      }
+      refreshFactors(draftColumns, slot, date, grid);
+      activeSlots.set(slot);
+    }
+
+    for (int slot : lastActiveSlots) {
+      if (!draftColumns.isBurning(slot)) {
+        continue;
+      }
+      Coordinates coordinates = layout.getCoordinates(slot);
+      for (int offsetX = -1; offsetX <= 1; offsetX++) {
+        for (int offsetY = -1; offsetY <= 1; offsetY++) {
+          if (offsetX == 0 && offsetY == 0) {
+            continue;
+          }
+          int neighborSlot = layout.getNeighbor(slot, offsetX, offsetY);
+          if (neighborSlot != CellLayout.NO_SLOT) {
+            if (!activeSlots.get(neighborSlot)) {
+              refreshFactors(draftColumns, neighborSlot, date, grid);
+              activeSlots.set(neighborSlot);
+            }
+            continue;
+          }
+          Coordinates neighborCoordinates = grid.getNeighbor(coordinates, offsetX, offsetY);
+          if (coordinates.getY() == neighborCoordinates.getY() && offsetY != 0) {
+            // Cell neighborhood through the poles is not expected.
+            continue;
+          }
+          if (burnedArea.contains(neighborCoordinates)) {
+            continue;
+          }
+          LatLng neighborPoint = grid.pointOf(neighborCoordinates);
+          double fuel = determineFuel(neighborPoint);
+          if (fuel < SIGNIFICANT_FUEL) {
+            continue;
+          }
+          int factorId = determineFactorId(neighborPoint, date, factorPool);
+          layout.addSlot(grid, neighborCoordinates, fuel);
+          activeSlots.set(
+              draftColumns.addCell(factorPool.get(factorId).getAirTemperature(), factorId));
+        }
+      }
+    }
+
+    draftColumns.setActiveSlots(activeSlots.stream().toArray());
+    return draftColumns;
+  }
+
+  private void refineDraftColumns(StepColumns draftColumns, Simulation simulation) {
+    if (stepPool == null) {
+      algorithm.refineDraftStep(draftColumns, simulation, kernels);
+    } else {
+      algorithm.refineDraftStep(draftColumns, simulation, kernels, stepPool, deterministic);
+    }
+  }
+
+  /**
+   * Recomputes the step following the given one the way {@link #createDraftColumns} and the
+   * refinement have computed it, with the recorded factor ids instead of the services.
+   *
+   * <p>The layout may already hold slots added after the step, which are ignored unless they are
+   * the next slots the draft step adds.
+   */
+  private StepColumns replayStep(
+      Simulation simulation, StepColumns lastColumns, int[] factorSlots, int[] factorIds) {
+    CellLayout layout = simulation.getLayout();
+    FactorPool factorPool = simulation.getFactorPool();
+    StepColumns draftColumns = lastColumns.copy();
+    // Retirement is checked with the factors of the last step, as the draft step checks it.
+    int[] lastActiveSlots = draftColumns.getActiveSlots();
+    BitSet activeSlots = new BitSet(draftColumns.size());
+    for (int slot : lastActiveSlots) {
+      if (!isRetirable(draftColumns, slot)) {
+        activeSlots.set(slot);
+      }
+    }
+    int factorIndex = 0;
+    while (factorIndex < factorSlots.length && factorSlots[factorIndex] < draftColumns.size()) {
+      draftColumns.setFactorId(factorSlots[factorIndex], factorIds[factorIndex]);
+      factorIndex++;
+    }
+    for (int slot : lastActiveSlots) {
+      if (!draftColumns.isBurning(slot)) {
+        continue;
+      }
+      for (int offsetX = -1; offsetX <= 1; offsetX++) {
+        for (int offsetY = -1; offsetY <= 1; offsetY++) {
+          int neighborSlot = layout.getNeighbor(slot, offsetX, offsetY);
+          if (offsetX == 0 && offsetY == 0
+              || neighborSlot == CellLayout.NO_SLOT
+              || draftColumns.size() < neighborSlot) {
+            continue;
+          }
+          if (layout.getY(slot) == layout.getY(neighborSlot) && offsetY != 0) {
+            // Cell neighborhood through the poles is not expected.
+            continue;
+          }
+          if (neighborSlot == draftColumns.size()) {
+            int factorId = factorIds[factorIndex++];
+            draftColumns.addCell(factorPool.get(factorId).getAirTemperature(), factorId);
+          }
+          activeSlots.set(neighborSlot);
+        }
+      }
+    }
+
+    draftColumns.setActiveSlots(activeSlots.stream().toArray());
+    refineDraftColumns(draftColumns, simulation);
+    return draftColumns;
+  }
+
+  private void refreshFactors(StepColumns columns, int slot, Instant date, Grid grid)
+      throws SimulatorException {
+    LatLng point = grid.pointOf(columns.getLayout().getCoordinates(slot));
+    columns.setFactorId(slot, determineFactorId(point, date, columns.getFactorPool()));
+  }
+
+  private Instant determineDraftStepDate(Simulation simulation) {
+    Duration period =
+        simulation.getTimeline().getStepDuration().multipliedBy(simulation.getSteps().size());
+    return simulation.getTimeline().getStartDate().plus(period);
+  }
+
+  private int determineFactorId(LatLng point, Instant date, FactorPool factorPool)
+      throws SimulatorException {
     Optional<Weather> weather = weatherService.getWeather(point, date);
     if (weather.isEmpty()) {
       throw new SimulatorException();
     }
-    return new Cell.Factors(
+    return factorPool.idOf(
         weather.get(), terrainService.getElevation(point), terrainService.getForestType(point));
   }
 
@@ -197,5 +496,130 @@ public final class Simulator {
     return fuel;
   }
 
+  public enum Engine {
+    /** Keeps every cell of a step as a linked object. */
+    OBJECT,
+    /** Keeps cell states in primitive columns and materializes cell objects on demand. */
+    COLUMNAR
+  }
+
+  public enum FrameStorage {
+    /** Keeps step history frames in heap arrays. */
+    HEAP,
+    /** Keeps step history frames in memory-mapped files of the frame directory. */
+    MAPPED,
+    /**
+     * Keeps step history frames in off-heap memory freed with the simulation, falls back to the
+     * heap unless built and run with the {@code preview} Maven profile.
+     */
+    OFF_HEAP
+  }
+
+  /** Immutable simulator settings, every modification creates a copy. */
+  public static final class Settings {
+    private int limitStepMilli = -1;
+    private Engine engine = Engine.COLUMNAR;
+    private int parallelism = 1;
+    private boolean deterministic = true;
+    private int renderCellBudget = 0;
+    private AutomatonAlgorithm.Kernel kernel = AutomatonAlgorithm.Kernel.SCALAR;
+    private long historyBudget = 0;
+    private FrameStorage frameStorage = FrameStorage.HEAP;
+    private Path frameDirectory = DEFAULT_FRAME_DIRECTORY;
+
+    public Settings() {}
+
+    private Settings(Settings origin) {
+      this.limitStepMilli = origin.limitStepMilli;
+      this.engine = origin.engine;
+      this.parallelism = origin.parallelism;
+      this.deterministic = origin.deterministic;
+      this.renderCellBudget = origin.renderCellBudget;
+      this.kernel = origin.kernel;
+      this.historyBudget = origin.historyBudget;
+      this.frameStorage = origin.frameStorage;
+      this.frameDirectory = origin.frameDirectory;
+    }
+
+    public Engine getEngine() {
+      return engine;
+    }
+
+    /** Marks a step as final if its computation takes longer than the limit. */
+    public Settings withLimitStepMilli(int limitStepMilli) {
+      Settings settings = new Settings(this);
+      settings.limitStepMilli = limitStepMilli;
+      return settings;
+    }
+
+    public Settings withEngine(Engine engine) {
+      Settings settings = new Settings(this);
+      settings.engine = engine;
+      return settings;
+    }
+
+    /** Refines columnar steps on a fork-join pool of the given size if it exceeds 1. */
+    public Settings withParallelism(int parallelism) {
+      Settings settings = new Settings(this);
+      settings.parallelism = parallelism;
+      return settings;
+    }
+
+    /**
+     * Selects whether parallel refinement sums up energy in a fixed order, which makes results
+     * identical for any parallelism, or in the order the threads compute it, which is faster.
+     */
+    public Settings withDeterministic(boolean deterministic) {
+      Settings settings = new Settings(this);
+      settings.deterministic = deterministic;
+      return settings;
+    }
+
+    /**
+     * Makes steps render burned-out interior cells as coarse cells of up to {@link
+     * CoarseBlocks#MAX_SPAN} grid cells while a step has more cells than the budget, if the budget
+     * is positive. Burning cells and their surroundings keep full resolution.
+     *
+     * <p>Only rendering is coarsened: the engines keep simulating every cell at full resolution,
+     * so the budget does not reduce the cost of a step.
+     */
+    public Settings withRenderCellBudget(int renderCellBudget) {
+      Settings settings = new Settings(this);
+      settings.renderCellBudget = renderCellBudget;
+      return settings;
+    }
+
+    /** Selects kernels of columnar steps, vector ones fall back to scalar if unavailable. */
+    public Settings withKernel(AutomatonAlgorithm.Kernel kernel) {
+      Settings settings = new Settings(this);
+      settings.kernel = kernel;
+      return settings;
+    }
+
+    /**
+     * Makes columnar simulations keep checkpoints within the budget of bytes per simulation and
+     * recompute the steps between them, if the budget is positive.
+     */
+    public Settings withHistoryBudget(long historyBudget) {
+      Settings settings = new Settings(this);
+      settings.historyBudget = historyBudget;
+      return settings;
+    }
+
+    /** Selects the storage of step history frames. */
+    public Settings withFrameStorage(FrameStorage frameStorage) {
+      Settings settings = new Settings(this);
+      settings.frameStorage = frameStorage;
+      return settings;
+    }
+
+    /** Sets the directory of memory-mapped frame files. */
+    public Settings withFrameDirectory(Path frameDirectory) {
+      Settings settings = new Settings(this);
+      settings.frameDirectory = frameDirectory;
+      return settings;
+    }
+  }
+
   private static final class SimulatorException extends Exception {}
 }
@@ -0,0 +1,147 @@
+package ru.cellularwildfire.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Caches the JSON of computed steps compressed for clients, so that a step is serialized and
+ * compressed once for all its viewers.
+ *
+ * <p>Compressed payloads are written one after another, which is valid since both gzip members and
+ * zstd frames can be concatenated. Payloads of immutable steps are kept in a {@link
+ * SimulationCache}, while the last step is encoded on each request until it is final.
+ */
+public final class StepPayloadCache {
+  private static final byte[] STEPS_PREFIX = "{\"steps\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] STEP_SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] STEPS_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectMapper objectMapper;
+  private final SimulationCache<byte[]> cache;
+
+  /** Creates a cache that keeps no payloads if the byte budget is not positive. */
+  public StepPayloadCache(ObjectMapper objectMapper, long byteBudget) {
+    this.objectMapper = objectMapper;
+    this.cache = SimulationCache.ofBytes(byteBudget);
+  }
+
+  public boolean isEnabled() {
+    return cache.isEnabled();
+  }
+
+  public long getCachedBytes() {
+    return cache.getCachedBytes();
+  }
+
+  /**
+   * Writes the steps from the start tick as a compressed JSON object of steps, the same as the
+   * progress endpoint responds with.
+   */
+  public void writeSteps(
+      Simulation simulation,
+      int startTick,
+      List<Simulation.Step> steps,
+      Encoding encoding,
+      OutputStream output)
+      throws IOException {
+    output.write(encoding.compress(STEPS_PREFIX));
+    byte[] separator = encoding.compress(STEP_SEPARATOR);
+    for (int index = 0; index < steps.size(); index++) {
+      if (index != 0) {
+        output.write(separator);
+      }
+      output.write(getPayload(simulation, startTick + index, steps.get(index), encoding));
+    }
+    output.write(encoding.compress(STEPS_SUFFIX));
+    output.flush();
+  }
+
+  /** Returns the compressed JSON of a computed step of the simulation at the tick. */
+  public byte[] getPayload(
+      Simulation simulation, int tick, Simulation.Step step, Encoding encoding) {
+    List<Object> key = List.of(tick, encoding);
+    byte[] payload = cache.get(simulation, key);
+    if (payload != null) {
+      return payload;
+    }
+
+    try {
+      payload = encoding.compress(objectMapper.writeValueAsBytes(step));
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    if (simulation.isImmutableStep(tick, step)) {
+      cache.put(simulation, key, payload);
+    }
+    return payload;
+  }
+
+  public enum Encoding {
+    ZSTD("zstd"),
+    GZIP("gzip");
+
+    private final String token;
+
+    Encoding(String token) {
+      this.token = token;
+    }
+
+    /**
+     * Returns the preferred encoding accepted by the value of an Accept-Encoding header, ignoring
+     * quality values other than zero.
+     */
+    public static Optional<Encoding> negotiate(String acceptEncoding) {
+      if (acceptEncoding == null) {
+        return Optional.empty();
+      }
+      Set<String> tokens = new HashSet<>();
+      for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+        String[] tokenAndParams = part.split(";");
+        boolean isRejected = false;
+        for (int index = 1; index < tokenAndParams.length; index++) {
+          String param = tokenAndParams[index].replace(" ", "");
+          isRejected |= param.matches("q=0(\\.0*)?");
+        }
+        if (!isRejected) {
+          tokens.add(tokenAndParams[0].trim());
+        }
+      }
+      for (Encoding encoding : values()) {
+        if (tokens.contains(encoding.token)) {
+          return Optional.of(encoding);
+        }
+      }
+      return Optional.empty();
+    }
+
+    /** Returns the value of the Content-Encoding header. */
+    public String getToken() {
+      return token;
+    }
+
+    public byte[] compress(byte[] bytes) {
+      if (this == ZSTD) {
+        return Zstd.compress(bytes);
+      }
+      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 32);
+      try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+        gzipOutput.write(bytes);
+      } catch (IOException exception) {
+        throw new UncheckedIOException(exception);
+      }
+      return output.toByteArray();
+    }
+  }
+}
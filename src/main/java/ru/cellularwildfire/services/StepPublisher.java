@@ -0,0 +1,50 @@
+package ru.cellularwildfire.services;
+
+import java.util.Optional;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Publishes the steps of a simulation as they are computed.
+ *
+ * <p>A step is computed only when the subscriber requests it, so a slow subscriber holds back the
+ * computation instead of buffering steps. The steps are computed on the scheduler.
+ */
+public final class StepPublisher {
+  private final Simulator simulator;
+  private final Scheduler scheduler;
+
+  public StepPublisher(Simulator simulator, Scheduler scheduler) {
+    this.simulator = simulator;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Returns the steps from the start tick up to the end tick, the final step or the release of the
+   * simulation.
+   */
+  public Flux<Simulation.Step> publishSteps(Simulation simulation, int startTick, int endTick) {
+    return Flux.<Simulation.Step, Integer>generate(
+            () -> startTick,
+            (tick, sink) -> {
+              if (endTick < tick || simulation.isReleased()) {
+                sink.complete();
+                return tick;
+              }
+              simulator.progressSimulation(simulation, tick);
+              Optional<Simulation.Step> foundStep = simulation.getSteps().findStep(tick);
+              if (foundStep.isEmpty()) {
+                sink.complete();
+                return tick;
+              }
+              Simulation.Step step = foundStep.get();
+              sink.next(step);
+              if (step.isFinal()) {
+                sink.complete();
+              }
+              return tick + 1;
+            })
+        .subscribeOn(scheduler);
+  }
+}
@@ -0,0 +1,192 @@
+package ru.cellularwildfire.services;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CellIndex;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.Simulation;
+
+/**
+ * Renders the fire state of steps into PNG map tiles of the Web Mercator tile scheme.
+ *
+ * <p>Cells are colored by heat like in the frontend: intact cells heated significantly above the
+ * air, burning cells and damaged cells, while the rest stays transparent. Tiles are rendered on a
+ * fixed pool of threads with a bounded queue, which rejects tiles once full instead of taking the
+ * CPU of simulations. Cells are looked up in the {@link CellIndex} of the step within the bounds
+ * of the tile, and tiles of immutable steps are kept in a {@link SimulationCache}.
+ */
+public final class TileRenderer {
+  public static final int TILE_SIZE = 256;
+  public static final int MAX_ZOOM = 24;
+  private static final double SIGNIFICANT_OVERHEAT = 30;
+  private static final double BURNING_MAX_HEAT = 900;
+  private static final int LAYER_ALPHA = 153;
+  private static final int[] INTACT_COLORS = {0, 200, 0, 255, 180, 0};
+  private static final int[] BURNING_COLORS = {255, 180, 0, 200, 0, 0};
+  private static final int[] DAMAGED_COLORS = {100, 100, 80, 255, 180, 0};
+
+  private final CellIndexCache cellIndexCache;
+  private final ThreadPoolExecutor executor;
+  private final SimulationCache<byte[]> cache;
+
+  public TileRenderer(
+      CellIndexCache cellIndexCache, int threads, int queueCapacity, long cacheByteBudget) {
+    this.cellIndexCache = cellIndexCache;
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thread.ofPlatform().name("tile-render-", 0).daemon().factory());
+    this.cache = SimulationCache.ofBytes(cacheByteBudget);
+  }
+
+  public static boolean isValidTile(int z, int x, int y) {
+    return 0 <= z && z <= MAX_ZOOM && 0 <= x && x < 1 << z && 0 <= y && y < 1 << z;
+  }
+
+  /**
+   * Returns the PNG tile of the step of the simulation at the tick.
+   *
+   * @throws java.util.concurrent.RejectedExecutionException if the queue of tiles is full.
+   */
+  public CompletableFuture<byte[]> renderTile(
+      Simulation simulation, int tick, Simulation.Step step, int z, int x, int y) {
+    List<Integer> key = List.of(tick, z, x, y);
+    byte[] cachedTile = cache.get(simulation, key);
+    if (cachedTile != null) {
+      return CompletableFuture.completedFuture(cachedTile);
+    }
+    return CompletableFuture.supplyAsync(
+        () -> {
+          CellIndex index = cellIndexCache.getIndex(simulation, tick, step);
+          byte[] tile = renderTile(simulation.getGrid(), index, z, x, y);
+          if (simulation.isImmutableStep(tick, step)) {
+            cache.put(simulation, key, tile);
+          }
+          return tile;
+        },
+        executor);
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Renders the cells of the index within the bounds of the tile into the PNG tile. Cells are also
+   * looked up one world width east and west, so that blocks crossing the antimeridian are drawn on
+   * both sides of it.
+   */
+  public static byte[] renderTile(Grid grid, CellIndex index, int z, int x, int y) {
+    double worldSize = (double) TILE_SIZE * (1L << z);
+    double originX = (double) x * TILE_SIZE;
+    double originY = (double) y * TILE_SIZE;
+    double westLng = lngOf(originX, worldSize);
+    double eastLng = lngOf(originX + TILE_SIZE, worldSize);
+    double northLat = latOf(originY, worldSize);
+    double southLat = latOf(originY + TILE_SIZE, worldSize);
+    int scale = grid.getScale();
+    double halfCell = 0.5 / scale;
+    int minX = (int) Math.floor(westLng * scale);
+    int maxX = (int) Math.ceil(eastLng * scale) - 1;
+    int minY = (int) Math.floor(southLat * scale);
+    int maxY = (int) Math.ceil(northLat * scale) - 1;
+
+    BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    for (int shiftX = -360 * scale; shiftX <= 360 * scale; shiftX += 360 * scale) {
+      List<Cell> cells =
+          index.findCells(
+              new Coordinates(minX - shiftX, minY), new Coordinates(maxX - shiftX, maxY));
+      for (Cell cell : cells) {
+        Coordinates coordinates = cell.getCoordinates();
+        int span = cell.getSpan();
+        double west = grid.lngOf(coordinates.getX() + shiftX) - halfCell;
+        double east = grid.lngOf(coordinates.getX() + shiftX + span - 1) + halfCell;
+        double south = grid.latOf(coordinates.getY()) - halfCell;
+        double north = grid.latOf(coordinates.getY() + span - 1) + halfCell;
+        if (east <= westLng || eastLng <= west || north <= southLat || northLat <= south) {
+          continue;
+        }
+        int color = colorOf(cell);
+        if (color == 0) {
+          continue;
+        }
+        int fromX = (int) Math.round(xOf(west, worldSize) - originX);
+        int toX = Math.max(fromX + 1, (int) Math.round(xOf(east, worldSize) - originX));
+        int fromY = (int) Math.round(yOf(north, worldSize) - originY);
+        int toY = Math.max(fromY + 1, (int) Math.round(yOf(south, worldSize) - originY));
+        for (int row = Math.max(0, fromY); row < Math.min(TILE_SIZE, toY); row++) {
+          for (int column = Math.max(0, fromX); column < Math.min(TILE_SIZE, toX); column++) {
+            pixels[row * TILE_SIZE + column] = color;
+          }
+        }
+      }
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", output);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return output.toByteArray();
+  }
+
+  /** Returns the ARGB color of the cell, transparent if it is not shown. */
+  private static int colorOf(Cell cell) {
+    double heat = cell.getState().getHeat();
+    if (cell.isBurning()) {
+      return gradientOf(BURNING_COLORS, Cell.IGNITION_TEMPERATURE, BURNING_MAX_HEAT, heat);
+    }
+    if (cell.getState().isDamaged()) {
+      return gradientOf(DAMAGED_COLORS, 0, Cell.IGNITION_TEMPERATURE, heat);
+    }
+    if (heat < cell.getFactors().getAirTemperature() + SIGNIFICANT_OVERHEAT) {
+      return 0;
+    }
+    return gradientOf(INTACT_COLORS, 0, Cell.IGNITION_TEMPERATURE, heat);
+  }
+
+  private static int gradientOf(int[] colors, double minValue, double maxValue, double value) {
+    double share = Math.max(0, Math.min(1, (value - minValue) / (maxValue - minValue)));
+    int color = LAYER_ALPHA;
+    for (int channel = 0; channel < 3; channel++) {
+      int from = colors[channel];
+      int to = colors[channel + 3];
+      color = color << 8 | (int) Math.round(from + (to - from) * share);
+    }
+    return color;
+  }
+
+  private static double xOf(double lng, double worldSize) {
+    return (lng + 180) / 360 * worldSize;
+  }
+
+  private static double yOf(double lat, double worldSize) {
+    double sin = Math.sin(Math.toRadians(lat));
+    return (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+  }
+
+  private static double lngOf(double tileX, double worldSize) {
+    return tileX / worldSize * 360 - 180;
+  }
+
+  private static double latOf(double tileY, double worldSize) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * tileY / worldSize))));
+  }
+}
@@ -0,0 +1,143 @@
+package ru.cellularwildfire.services;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import ru.cellularwildfire.data.ForestTypeFactors;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.StepColumns;
+
+/**
+ * Kernels evaluating the exact formulas of {@link AutomatonAlgorithm} on SIMD lanes.
+ *
+ * <p>The class refers to the incubating Vector API and is loaded reflectively only if the {@code
+ * jdk.incubator.vector} module is enabled. Lane-wise {@code EXP} and {@code POW} may differ from
+ * {@link Math} in the last bits, so results are close but not identical to the scalar kernels.
+ */
+final class VectorKernels implements AutomatonKernels {
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  private final double combustionIntensity;
+  private final double humidityEffect;
+  private final double convectionIntensity;
+  private final double radiationIntensity;
+
+  VectorKernels(
+      double combustionIntensity,
+      double humidityEffect,
+      double convectionIntensity,
+      double radiationIntensity) {
+    this.combustionIntensity = combustionIntensity;
+    this.humidityEffect = humidityEffect;
+    this.convectionIntensity = convectionIntensity;
+    this.radiationIntensity = radiationIntensity;
+  }
+
+  @Override
+  public void calculateCombustionRates(
+      StepColumns columns, int[] slots, double[] combustionRates, int from, int to) {
+    int count = to - from;
+    double[] activationEnergies = new double[count];
+    double[] heats = new double[count];
+    double[] airHumidities = new double[count];
+    for (int index = 0; index < count; index++) {
+      int slot = slots[from + index];
+      Cell.Factors factors = columns.getFactors(slot);
+      activationEnergies[index] =
+          ForestTypeFactors.determineActivationEnergy(factors.getForestType());
+      heats[index] = columns.getHeat(slot);
+      airHumidities[index] = factors.getAirHumidity();
+    }
+
+    int index = 0;
+    for (; index < SPECIES.loopBound(count); index += SPECIES.length()) {
+      DoubleVector activationEnergy = DoubleVector.fromArray(SPECIES, activationEnergies, index);
+      DoubleVector temperature =
+          DoubleVector.fromArray(SPECIES, heats, index)
+              .add(AutomatonAlgorithm.CELSIUS_ZERO_TEMPERATURE);
+      DoubleVector firePower =
+          activationEnergy
+              .neg()
+              .div(AutomatonAlgorithm.UNIVERSAL_GAS_CONSTANT)
+              .div(temperature);
+      DoubleVector airHumidityInfluence =
+          DoubleVector.broadcast(SPECIES, 1)
+              .sub(DoubleVector.fromArray(SPECIES, airHumidities, index))
+              .lanewise(VectorOperators.POW, humidityEffect);
+      airHumidityInfluence
+          .mul(combustionIntensity)
+          .mul(firePower.lanewise(VectorOperators.EXP))
+          .intoArray(combustionRates, from + index);
+    }
+    for (; index < count; index++) {
+      double temperature = heats[index] + AutomatonAlgorithm.CELSIUS_ZERO_TEMPERATURE;
+      double firePower =
+          -activationEnergies[index] / AutomatonAlgorithm.UNIVERSAL_GAS_CONSTANT / temperature;
+      double airHumidityInfluence = Math.pow(1 - airHumidities[index], humidityEffect);
+      combustionRates[from + index] =
+          airHumidityInfluence * combustionIntensity * Math.exp(firePower);
+    }
+  }
+
+  @Override
+  public void regulateHeats(
+      StepColumns columns, int[] slots, double[] regulatedHeats, int from, int to) {
+    int count = to - from;
+    double[] heats = new double[count];
+    double[] airTemperatures = new double[count];
+    for (int index = 0; index < count; index++) {
+      int slot = slots[from + index];
+      heats[index] = columns.getHeat(slot);
+      airTemperatures[index] = columns.getFactors(slot).getAirTemperature();
+    }
+
+    int index = 0;
+    for (; index < SPECIES.loopBound(count); index += SPECIES.length()) {
+      regulateHeats(
+              DoubleVector.fromArray(SPECIES, heats, index),
+              DoubleVector.fromArray(SPECIES, airTemperatures, index))
+          .intoArray(regulatedHeats, from + index);
+    }
+    if (index < count) {
+      VectorMask<Double> tail = SPECIES.indexInRange(index, count);
+      regulateHeats(
+              DoubleVector.fromArray(SPECIES, heats, index, tail),
+              DoubleVector.fromArray(SPECIES, airTemperatures, index, tail))
+          .intoArray(regulatedHeats, from + index, tail);
+    }
+  }
+
+  /** Performs the iterative heat regulation on all lanes until every lane completes its phase. */
+  private DoubleVector regulateHeats(DoubleVector celsiusHeat, DoubleVector celsiusAirTemperature) {
+    double zero = AutomatonAlgorithm.CELSIUS_ZERO_TEMPERATURE;
+    DoubleVector heat = celsiusHeat.min(AutomatonAlgorithm.HEAT_LIMIT).add(zero);
+    DoubleVector airTemperature = celsiusAirTemperature.add(zero);
+    DoubleVector phase = DoubleVector.zero(SPECIES);
+    VectorMask<Double> unfinished = phase.lt(0.999);
+    while (unfinished.anyTrue()) {
+      DoubleVector convectionRate = heat.sub(airTemperature).mul(-convectionIntensity);
+      DoubleVector radiationRate = heat.mul(heat).mul(heat).mul(heat).mul(-radiationIntensity);
+      DoubleVector heatChangeRate = convectionRate.add(radiationRate);
+      DoubleVector phaseFraction = DoubleVector.broadcast(SPECIES, 1);
+      DoubleVector heatChange = heatChangeRate;
+
+      DoubleVector heatChangeLimit = heat.mul(AutomatonAlgorithm.HEAT_CHANGE_LIMIT);
+      VectorMask<Double> limited = heatChange.abs().compare(VectorOperators.GT, heatChangeLimit);
+      DoubleVector limitedHeatChange =
+          heatChangeLimit.blend(heatChangeLimit.neg(), heatChange.lt(0));
+      heatChange = heatChange.blend(limitedHeatChange, limited);
+      phaseFraction = phaseFraction.blend(heatChange.div(heatChangeRate), limited);
+
+      VectorMask<Double> overflowing = phase.add(phaseFraction).compare(VectorOperators.GT, 1);
+      DoubleVector remainingPhase = phase.neg().add(1);
+      phaseFraction = phaseFraction.blend(remainingPhase, overflowing);
+      heatChange = heatChange.blend(heatChangeRate.mul(remainingPhase), overflowing);
+
+      phase = phase.add(phaseFraction, unfinished);
+      heat = heat.add(heatChange, unfinished).max(0);
+      unfinished = phase.lt(0.999);
+    }
+    return heat.sub(zero);
+  }
+}
@@ -9,6 +9,7 @@ import java.util.*;
 import ru.cellularwildfire.models.Coordinates;
 import ru.cellularwildfire.models.Grid;
 import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.LongIndexMap;
 import ru.cellularwildfire.models.Weather;
 import ru.cellularwildfire.services.WeatherService;
 
@@ -16,7 +17,7 @@ public final class WeatherApiService implements WeatherService {
   private static final Grid GRID = new Grid(20);
   private static final long TIME_SCALE = Duration.ofHours(1).toSeconds();
   public final int monthlyRequestLimit;
-  private final SortedMap<Long, Map<Coordinates, Weather>> cache = new TreeMap<>();
+  private final SortedMap<Long, WeatherSnapshot> cache = new TreeMap<>();
   private final WeatherApiClient weatherApiClient;
   public long monthIndex = 0;
   public int requestCount = 0;
@@ -95,17 +96,14 @@ public final class WeatherApiService implements WeatherService {
 
   private void putTimePoint(long timePoint) {
     synchronized (cache) {
-      cache.put(timePoint, new HashMap<>());
+      cache.put(timePoint, new WeatherSnapshot());
     }
   }
 
   private Optional<Weather> findCached(Coordinates coordinates, long timePoint) {
     synchronized (cache) {
       if (cache.containsKey(timePoint)) {
-        Map<Coordinates, Weather> serialData = cache.get(timePoint);
-        if (serialData.containsKey(coordinates)) {
-          return Optional.of(serialData.get(coordinates));
-        }
+        return cache.get(timePoint).find(coordinates);
       }
     }
     return Optional.empty();
@@ -118,4 +116,25 @@ public final class WeatherApiService implements WeatherService {
   private long timePointOf(Instant date) {
     return date.getEpochSecond() / TIME_SCALE;
   }
+
+  /** Weather of a time point indexed by packed coordinates. */
+  private static final class WeatherSnapshot {
+    private final LongIndexMap indices = new LongIndexMap();
+    private final List<Weather> weathers = new ArrayList<>();
+
+    private void put(Coordinates coordinates, Weather weather) {
+      int index = indices.get(coordinates.pack());
+      if (index == LongIndexMap.NO_INDEX) {
+        indices.put(coordinates.pack(), weathers.size());
+        weathers.add(weather);
+      } else {
+        weathers.set(index, weather);
+      }
+    }
+
+    private Optional<Weather> find(Coordinates coordinates) {
+      int index = indices.get(coordinates.pack());
+      return index == LongIndexMap.NO_INDEX ? Optional.empty() : Optional.of(weathers.get(index));
+    }
+  }
 }
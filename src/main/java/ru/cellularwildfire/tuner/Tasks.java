@@ -1,7 +1,9 @@
 package ru.cellularwildfire.tuner;
 
 import java.util.List;
+import ru.cellularwildfire.tuner.cases.KernelPerformance;
 import ru.cellularwildfire.tuner.cases.Performance;
+import ru.cellularwildfire.tuner.cases.RegulationPerformance;
 import ru.cellularwildfire.tuner.cases.process.CombustionRate;
 import ru.cellularwildfire.tuner.cases.process.HeatRegulation;
 import ru.cellularwildfire.tuner.cases.simulation.AlgarveFire;
@@ -31,7 +33,13 @@ public final class Tasks {
   }
 
   public static TuneTask evaluatePerformance() {
-    return new TuneTask("Performance", List.of(new Criterion(new Performance())), List.of());
+    return new TuneTask(
+        "Performance",
+        List.of(
+            new Criterion(new Performance()),
+            new Criterion(new RegulationPerformance()),
+            new Criterion(new KernelPerformance())),
+        List.of());
   }
 
   public static TuneTask tuneHeatRegulation() {
@@ -0,0 +1,77 @@
+package ru.cellularwildfire.tuner.cases;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepColumns;
+import ru.cellularwildfire.models.Weather;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.AutomatonKernels;
+import ru.cellularwildfire.tuner.experiment.Assessment;
+import ru.cellularwildfire.tuner.experiment.TuneCase;
+
+public class KernelPerformance extends TuneCase {
+  private static final int[] FRONT_SIZES = {1_000, 10_000, 100_000};
+  private static final int ROUNDS = 20;
+
+  private static StepColumns createFront(int size) {
+    Simulation simulation = createSimulation();
+    Random random = new Random(size);
+    StepColumns columns = new StepColumns(simulation.getLayout(), simulation.getFactorPool());
+    for (int index = 0; index < size; index++) {
+      Coordinates coordinates = new Coordinates(index % 1000, index / 1000);
+      simulation.getLayout().addSlot(simulation.getGrid(), coordinates, 1);
+      Cell.Factors factors =
+          new Cell.Factors(
+              new Weather(20 + random.nextInt(15), random.nextInt(60) / 100.0, 0, 0),
+              0,
+              (byte) (ForestType.EVERGREEN_NEEDLE_LEAF + random.nextInt(ForestType.MIXED)));
+      columns.addCell(500 + random.nextDouble() * 1000, simulation.getFactorPool().idOf(factors));
+    }
+    return columns;
+  }
+
+  private static long measureMicro(AutomatonKernels kernels, StepColumns columns) {
+    int[] slots = new int[columns.size()];
+    for (int slot = 0; slot < slots.length; slot++) {
+      slots[slot] = slot;
+    }
+    double[] results = new double[slots.length];
+    Instant startTime = Instant.now();
+    for (int round = 0; round < ROUNDS; round++) {
+      kernels.calculateCombustionRates(columns, slots, results, 0, slots.length);
+      kernels.regulateHeats(columns, slots, results, 0, slots.length);
+    }
+    return Duration.between(startTime, Instant.now()).toNanos() / 1000 / ROUNDS;
+  }
+
+  @Override
+  public void assess(AutomatonAlgorithm algorithm, Assessment assessment)
+      throws TuneCaseFailedException {
+    AutomatonKernels scalarKernels = algorithm.createKernels(AutomatonAlgorithm.Kernel.SCALAR);
+    AutomatonKernels vectorKernels = algorithm.createKernels(AutomatonAlgorithm.Kernel.VECTOR);
+    if (vectorKernels.getClass() == scalarKernels.getClass()) {
+      assessment.message("Vector kernels are not available, build with the preview profile.");
+      return;
+    }
+
+    List<String> measurements = new ArrayList<>();
+    for (int size : FRONT_SIZES) {
+      StepColumns columns = createFront(size);
+      // Both are warmed up before the measurement.
+      measureMicro(scalarKernels, columns);
+      measureMicro(vectorKernels, columns);
+      long scalarMicro = measureMicro(scalarKernels, columns);
+      long vectorMicro = measureMicro(vectorKernels, columns);
+      measurements.add(
+          "%d cells: %d scalar, %d vector".formatted(size, scalarMicro, vectorMicro));
+    }
+    assessment.message("Kernel microseconds for " + String.join("; ", measurements));
+  }
+}
@@ -1,6 +1,11 @@
 package ru.cellularwildfire.tuner.cases;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
 import ru.cellularwildfire.models.Simulation;
 import ru.cellularwildfire.services.AutomatonAlgorithm;
@@ -10,6 +15,11 @@ import ru.cellularwildfire.tuner.experiment.TuneCase;
 import ru.cellularwildfire.tuner.services.SlopedTerrainService;
 import ru.cellularwildfire.tuner.services.UniformWeatherService;
 
+/**
+ * Measures a step of every engine once the fire affects 100000 cells and fails if the default
+ * engine is slower than another one. Engines take turns over the rounds and the fastest round of
+ * each is taken, so that the warm-up of the first rounds does not count.
+ */
 public class Performance extends TuneCase {
   private static final int FOREST_TYPE = ForestType.MIXED;
   private static final double FUEL = 0.7;
@@ -17,30 +27,70 @@ public class Performance extends TuneCase {
   private static final double AIR_HUMIDITY = 0.3;
   private static final double WIND_X = 0;
   private static final double WIND_Y = 0;
+  private static final int AFFECTED_CELLS = 100000;
+  private static final int ROUNDS = 3;
+  private static final int MEASURED_STEPS = 20;
 
   @Override
   public void assess(AutomatonAlgorithm algorithm, Assessment assessment)
       throws TuneCaseFailedException {
-    Simulator simulator =
-        new Simulator(
-            new SlopedTerrainService(FOREST_TYPE, FUEL, 10, 180),
-            new UniformWeatherService(AIR_TEMPERATURE, AIR_HUMIDITY, WIND_X, WIND_Y),
-            algorithm);
-    Simulation simulation = startDefaultSimulation(simulator);
-    while (simulation.getSteps().getLast().getCells().size() < 100000) {
-      progressOntStep(simulator, simulation);
+    Map<Simulator.Engine, Double> stepMilli = new EnumMap<>(Simulator.Engine.class);
+    Map<Simulator.Engine, String> counts = new EnumMap<>(Simulator.Engine.class);
+    for (int round = 0; round < ROUNDS; round++) {
+      for (Simulator.Engine engine : Simulator.Engine.values()) {
+        Simulator simulator =
+            new Simulator(
+                new SlopedTerrainService(FOREST_TYPE, FUEL, 10, 180),
+                new UniformWeatherService(AIR_TEMPERATURE, AIR_HUMIDITY, WIND_X, WIND_Y),
+                algorithm,
+                new Simulator.Settings().withEngine(engine));
+        Simulation simulation = startDefaultSimulation(simulator);
+        while (simulation.getSteps().getLast().countCells() < AFFECTED_CELLS) {
+          progressOntStep(simulator, simulation);
+        }
+        long minAffected = Long.MAX_VALUE, minProcessed = Long.MAX_VALUE;
+        long minBurning = Long.MAX_VALUE;
+        Instant startTime = Instant.now();
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+          minAffected = Math.min(minAffected, simulation.getSteps().getLast().countCells());
+          minProcessed = Math.min(minProcessed, countProcessedCells(simulation));
+          minBurning = Math.min(minBurning, countBurningCells(simulation));
+          progressOntStep(simulator, simulation);
+        }
+        double milli =
+            Duration.between(startTime, Instant.now()).toNanos() / 1e6 / MEASURED_STEPS;
+        stepMilli.merge(engine, milli, Math::min);
+        counts.put(
+            engine,
+            "%d <= affected cells; %d <= processed cells; %d <= burning cells"
+                .formatted(minAffected, minProcessed, minBurning));
+      }
     }
-    long minAffected = Long.MAX_VALUE, minBurning = Long.MAX_VALUE;
-    Instant startTime = Instant.now();
-    for (int i = 0; i < 10; i++) {
-      minAffected = Math.min(minAffected, simulation.getSteps().getLast().getCells().size());
-      minBurning = Math.min(minBurning, countBurningCells(simulation));
-      progressOntStep(simulator, simulation);
+
+    Simulator.Engine defaultEngine = new Simulator.Settings().getEngine();
+    List<String> measurements = new ArrayList<>();
+    for (Simulator.Engine engine : Simulator.Engine.values()) {
+      measurements.add(
+          "%s step transition: %s; %.1f milliseconds elapsed"
+              .formatted(engine, counts.get(engine), stepMilli.get(engine)));
+    }
+    String message = String.join("; ", measurements);
+    for (Simulator.Engine engine : Simulator.Engine.values()) {
+      if (stepMilli.get(engine) < stepMilli.get(defaultEngine)) {
+        assessment.failure(
+            "Default %s engine is slower than %s. %s".formatted(defaultEngine, engine, message));
+      }
+    }
+    assessment.message(message);
+  }
+
+  /** Returns the number of cells the engine processes, which excludes retired or frozen cells. */
+  private static int countProcessedCells(Simulation simulation) {
+    Simulation.Step lastStep = simulation.getSteps().getLast();
+    if (lastStep.getColumns().isPresent()) {
+      return lastStep.getColumns().get().getActiveSlots().length;
     }
-    long elapsedMilli = (Instant.now().toEpochMilli() - startTime.toEpochMilli()) / 10;
-    String template =
-        "One step transition: %d <= affected cells; %d <= burning cells; %d milliseconds elapsed";
-    assessment.message(String.format(template, minAffected, minBurning, elapsedMilli));
+    return lastStep.getLiveCells().size();
   }
 
   private void progressOntStep(Simulator simulator, Simulation simulation) {
@@ -0,0 +1,78 @@
+package ru.cellularwildfire.tuner.cases;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.List;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.experiment.Assessment;
+import ru.cellularwildfire.tuner.experiment.TuneCase;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public class RegulationPerformance extends TuneCase {
+  private static final int FOREST_TYPE = ForestType.MIXED;
+  private static final double FUEL = 0.7;
+  private static final double AIR_TEMPERATURE = 30;
+  private static final double AIR_HUMIDITY = 0.3;
+  private static final double WIND_X = 0;
+  private static final double WIND_Y = 0;
+  private static final int ROUNDS = 10;
+
+  private static long measureMilli(
+      AutomatonAlgorithm algorithm, Method regulator, List<Cell> cells, boolean iterative)
+      throws InvocationTargetException, IllegalAccessException {
+    Instant startTime = Instant.now();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (Cell cell : cells) {
+        double heat = cell.getState().getHeat();
+        double airTemperature = cell.getFactors().getAirTemperature();
+        if (iterative) {
+          regulator.invoke(algorithm, heat, airTemperature, null);
+        } else {
+          regulator.invoke(algorithm, heat, airTemperature);
+        }
+      }
+    }
+    return (Instant.now().toEpochMilli() - startTime.toEpochMilli()) / ROUNDS;
+  }
+
+  @Override
+  public void assess(AutomatonAlgorithm algorithm, Assessment assessment)
+      throws TuneCaseFailedException {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(FOREST_TYPE, FUEL, 10, 180),
+            new UniformWeatherService(AIR_TEMPERATURE, AIR_HUMIDITY, WIND_X, WIND_Y),
+            algorithm);
+    Simulation simulation = startDefaultSimulation(simulator);
+    while (simulation.getSteps().getLast().countCells() < 100000) {
+      simulator.progressSimulation(simulation, simulation.getSteps().size());
+    }
+    List<Cell> cells = simulation.getSteps().getLast().getCells();
+    try {
+      Method tabulatedRegulator =
+          AutomatonAlgorithm.class.getDeclaredMethod("regulateHeat", double.class, double.class);
+      tabulatedRegulator.setAccessible(true);
+      Method iterativeRegulator =
+          AutomatonAlgorithm.class.getDeclaredMethod(
+              "iterateHeatRegulation", double.class, double.class, long[].class);
+      iterativeRegulator.setAccessible(true);
+
+      // Both are warmed up before the measurement.
+      measureMilli(algorithm, iterativeRegulator, cells, true);
+      measureMilli(algorithm, tabulatedRegulator, cells, false);
+      long iterativeMilli = measureMilli(algorithm, iterativeRegulator, cells, true);
+      long tabulatedMilli = measureMilli(algorithm, tabulatedRegulator, cells, false);
+      String template =
+          "Heat regulation of %d cells: %d milliseconds iterative; %d milliseconds tabulated";
+      assessment.message(String.format(template, cells.size(), iterativeMilli, tabulatedMilli));
+    } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException exception) {
+      assessment.failure(exception.getClass().getSimpleName() + ": " + exception.getMessage());
+    }
+  }
+}
@@ -7,6 +7,7 @@ import ru.cellularwildfire.models.Cell;
 import ru.cellularwildfire.models.Coordinates;
 import ru.cellularwildfire.models.Weather;
 import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.HeatRegulationTable;
 import ru.cellularwildfire.tuner.experiment.Assessment;
 import ru.cellularwildfire.tuner.experiment.TuneCase;
 
@@ -18,6 +19,28 @@ public final class HeatRegulation extends TuneCase {
         new Cell.Factors(new Weather(30, 0, 0, 0), 0, ForestType.MIXED));
   }
 
+  private static double measureTableDeviation(AutomatonAlgorithm algorithm)
+      throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    Method tabulatedRegulator =
+        AutomatonAlgorithm.class.getDeclaredMethod("regulateHeat", double.class, double.class);
+    tabulatedRegulator.setAccessible(true);
+    Method iterativeRegulator =
+        AutomatonAlgorithm.class.getDeclaredMethod(
+            "iterateHeatRegulation", double.class, double.class, long[].class);
+    iterativeRegulator.setAccessible(true);
+
+    double deviation = 0;
+    for (int airTemperature = -40; airTemperature <= 50; airTemperature += 10) {
+      for (double heat = airTemperature - 20; heat < 2500; heat += 0.37) {
+        double tabulatedHeat = (double) tabulatedRegulator.invoke(algorithm, heat, airTemperature);
+        double iteratedHeat =
+            (double) iterativeRegulator.invoke(algorithm, heat, airTemperature, null);
+        deviation = Math.max(deviation, Math.abs(tabulatedHeat - iteratedHeat));
+      }
+    }
+    return deviation;
+  }
+
   @Override
   public void assess(AutomatonAlgorithm algorithm, Assessment assessment)
       throws TuneCaseFailedException {
@@ -45,6 +68,11 @@ public final class HeatRegulation extends TuneCase {
       heatRegulator.invoke(algorithm, coldCell);
       heat = coldCell.getState().getHeat();
       assessment.requireInRange(heat, 100, 150, "Cold cell heat");
+
+      assessment.requireLessThan(
+          measureTableDeviation(algorithm),
+          HeatRegulationTable.MAX_ERROR,
+          "Heat regulation table deviation");
     } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException exception) {
       assessment.failure(exception.getClass().getSimpleName() + ": " + exception.getMessage());
     }
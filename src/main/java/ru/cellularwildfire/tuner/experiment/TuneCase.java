@@ -2,7 +2,6 @@ package ru.cellularwildfire.tuner.experiment;
 
 import java.time.Duration;
 import java.time.Instant;
-import ru.cellularwildfire.models.Cell;
 import ru.cellularwildfire.models.LatLng;
 import ru.cellularwildfire.models.Simulation;
 import ru.cellularwildfire.services.AutomatonAlgorithm;
@@ -36,32 +35,39 @@ public abstract class TuneCase {
   protected static double estimateDamagedHectares(Simulation simulation) {
     return simulation.getSteps().getLast().getCells().stream()
             .filter(cell -> cell.getState().isDamaged())
-            .map(cell -> simulation.getGrid().estimateCellArea(cell.getCoordinates()))
+            .map(
+                cell ->
+                    simulation.getGrid().estimateCellArea(cell.getCoordinates(), cell.getSpan()))
             .mapToDouble(Double::doubleValue)
             .sum()
         / 10000;
   }
 
   protected static long countBurningCells(Simulation simulation) {
-    return simulation.getSteps().getLast().getCells().stream().filter(Cell::isBurning).count();
+    return simulation.getSteps().getLast().countBurningCells();
   }
 
   protected static long countDamagedCells(Simulation simulation) {
     return simulation.getSteps().getLast().getCells().stream()
         .filter(cell -> cell.getState().isDamaged())
-        .count();
+        .mapToLong(cell -> (long) cell.getSpan() * cell.getSpan())
+        .sum();
   }
 
   protected static double countBurnedFuel(Simulation simulation, double initialUniformFuel) {
     return simulation.getSteps().getLast().getCells().stream()
-            .map(cell -> initialUniformFuel - cell.getState().getFuel())
+            .map(
+                cell ->
+                    (initialUniformFuel - cell.getState().getFuel())
+                        * cell.getSpan()
+                        * cell.getSpan())
             .mapToDouble(Double::doubleValue)
             .sum()
         / Math.pow(simulation.getGrid().getScale(), 2);
   }
 
   protected static boolean hasBurningCells(Simulation simulation) {
-    return simulation.getSteps().getLast().getCells().stream().anyMatch(Cell::isBurning);
+    return simulation.getSteps().getLast().hasBurningCells();
   }
 
   private static LatLng getDefaultStartPoint() {
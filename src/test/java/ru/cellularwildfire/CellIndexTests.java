@@ -0,0 +1,174 @@
+package ru.cellularwildfire;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CellIndex;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.CellIndexCache;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class CellIndexTests {
+  private static final int[][] RANGES = {
+    {-5, -5, 5, 5}, {0, 0, 0, 0}, {-40, 3, 7, 20}, {-1000, -1000, 1000, 1000}, {13, -17, 31, -2},
+    {200, 200, 300, 300}, {5, 5, 4, 4}
+  };
+
+  private static Simulation simulate(Simulator.Settings settings, int ticks) {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm(),
+            settings);
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, ticks);
+    return simulation;
+  }
+
+  private static List<Cell> simulateCells(Simulator.Settings settings, int ticks) {
+    return simulate(settings, ticks).getSteps().get(ticks).getCells();
+  }
+
+  private static Set<String> describe(List<Cell> cells) {
+    return cells.stream()
+        .map(
+            cell ->
+                cell.getCoordinates().getX()
+                    + ","
+                    + cell.getCoordinates().getY()
+                    + ","
+                    + cell.getState().getHeat())
+        .collect(Collectors.toSet());
+  }
+
+  private static Set<Cell> findCellsByScan(List<Cell> cells, Coordinates lower, Coordinates upper) {
+    Set<Cell> foundCells = new HashSet<>();
+    if (upper.getX() < lower.getX() || upper.getY() < lower.getY()) {
+      return foundCells;
+    }
+    for (Cell cell : cells) {
+      int x = cell.getCoordinates().getX();
+      int y = cell.getCoordinates().getY();
+      int span = cell.getSpan();
+      if (x <= upper.getX()
+          && lower.getX() < x + span
+          && y <= upper.getY()
+          && lower.getY() < y + span) {
+        foundCells.add(cell);
+      }
+    }
+    return foundCells;
+  }
+
+  private static void assertQueries(List<Cell> cells) {
+    CellIndex index = new CellIndex(cells);
+    for (int[] range : RANGES) {
+      Coordinates lower = new Coordinates(range[0], range[1]);
+      Coordinates upper = new Coordinates(range[2], range[3]);
+      List<Cell> foundCells = index.findCells(lower, upper);
+      Assertions.assertEquals(foundCells.size(), new HashSet<>(foundCells).size());
+      Assertions.assertEquals(findCellsByScan(cells, lower, upper), new HashSet<>(foundCells));
+    }
+  }
+
+  private static void assertSameQueries(CellIndex expectedIndex, CellIndex index) {
+    for (int[] range : RANGES) {
+      Coordinates lower = new Coordinates(range[0], range[1]);
+      Coordinates upper = new Coordinates(range[2], range[3]);
+      List<Cell> foundCells = index.findCells(lower, upper);
+      Assertions.assertEquals(expectedIndex.findCells(lower, upper).size(), foundCells.size());
+      Assertions.assertEquals(
+          describe(expectedIndex.findCells(lower, upper)), describe(foundCells));
+    }
+  }
+
+  @Test
+  public void testQueriesMatchScan() {
+    assertQueries(simulateCells(new Simulator.Settings(), 40));
+  }
+
+  @Test
+  public void testQueriesFindCoarseCells() {
+    List<Cell> cells = simulateCells(new Simulator.Settings().withRenderCellBudget(100), 50);
+    Assertions.assertTrue(cells.stream().anyMatch(cell -> 4 <= cell.getSpan()));
+    assertQueries(cells);
+  }
+
+  @Test
+  public void testExtendedColumnIndicesMatchCellIndices() {
+    Simulation simulation = simulate(new Simulator.Settings(), 40);
+    List<CellIndex> indices = new ArrayList<>();
+    indices.add(CellIndex.ofColumns(simulation.getSteps().get(0)).orElseThrow());
+    for (int tick = 1; tick <= 40; tick++) {
+      Simulation.Step step = simulation.getSteps().get(tick);
+      indices.add(indices.getLast().extendTo(step).orElseThrow().withoutColumns());
+      assertSameQueries(new CellIndex(step.getCells()), indices.getLast().bindTo(step));
+    }
+    // Extensions copy the buckets they change, so earlier indices keep answering for their steps.
+    for (int tick = 0; tick <= 40; tick += 10) {
+      Simulation.Step step = simulation.getSteps().get(tick);
+      assertSameQueries(new CellIndex(step.getCells()), indices.get(tick).bindTo(step));
+    }
+    List<Cell> cells = simulation.getSteps().get(40).getCells();
+    Assertions.assertTrue(4 * indices.getLast().countBytes() < new CellIndex(cells).countBytes());
+  }
+
+  @Test
+  public void testIndicesWithoutColumnsAreBoundToTheirSteps() {
+    Simulation simulation = simulate(new Simulator.Settings(), 20);
+    CellIndex index =
+        CellIndex.ofColumns(simulation.getSteps().get(20)).orElseThrow().withoutColumns();
+    Coordinates lower = new Coordinates(-5, -5);
+    Coordinates upper = new Coordinates(5, 5);
+
+    Assertions.assertThrows(IllegalStateException.class, () -> index.findCells(lower, upper));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> index.bindTo(simulation.getSteps().get(10)));
+    assertSameQueries(
+        new CellIndex(simulation.getSteps().get(20).getCells()),
+        index.bindTo(simulation.getSteps().get(20)));
+  }
+
+  @Test
+  public void testCoarseStepsAreNotIndexedOverColumns() {
+    Simulation simulation = simulate(new Simulator.Settings().withRenderCellBudget(100), 50);
+    Simulation.Step step = simulation.getSteps().get(50);
+    Assertions.assertTrue(CellIndex.ofColumns(step).isEmpty());
+    Assertions.assertTrue(
+        CellIndex.ofColumns(simulation.getSteps().get(0))
+            .orElseThrow()
+            .extendTo(step)
+            .isEmpty());
+  }
+
+  @Test
+  public void testCacheIndexesStepsOnFirstQuery() {
+    CellIndexCache cache = new CellIndexCache(1 << 24);
+    Simulation simulation = simulate(new Simulator.Settings(), 30);
+    Assertions.assertEquals(0, cache.getCachedBytes());
+    for (int tick = 0; tick <= 30; tick++) {
+      cache.getIndex(simulation, tick, simulation.getSteps().get(tick));
+    }
+    long cachedBytes = cache.getCachedBytes();
+    Assertions.assertTrue(0 < cachedBytes);
+    Simulation.Step step = simulation.getSteps().get(30);
+    CellIndex index = cache.getIndex(simulation, 30, step);
+    Assertions.assertEquals(cachedBytes, cache.getCachedBytes());
+    Assertions.assertEquals(
+        describe(step.getCells()),
+        describe(index.findCells(new Coordinates(-1000, -1000), new Coordinates(1000, 1000))));
+  }
+}
@@ -2,6 +2,9 @@ package ru.cellularwildfire;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.FactorPool;
 import ru.cellularwildfire.models.Weather;
 
 public class CellTests {
@@ -68,4 +71,21 @@ public class CellTests {
     Assertions.assertEquals(weather1, weather2);
     Assertions.assertNotEquals(weather1, weather3);
   }
+
+  @Test
+  public void testFactorInterning() {
+    FactorPool factorPool = new FactorPool();
+    Weather weather = new Weather(-12, 0.87, -3.3, 12.7);
+    Cell.Factors factors = new Cell.Factors(weather, 1234, ForestType.DECIDUOUS_NEEDLE_LEAF);
+
+    int id = factorPool.idOf(weather, 1234, ForestType.DECIDUOUS_NEEDLE_LEAF);
+    Assertions.assertEquals(factors, factorPool.get(id));
+    Assertions.assertEquals(factors.getElevation(), factorPool.get(id).getElevation());
+    Assertions.assertEquals(id, factorPool.idOf(factors));
+    Assertions.assertSame(
+        factorPool.get(id),
+        factorPool.get(factorPool.idOf(new Weather(-12.2, 0.87, -3.3, 12.7), 1234, (byte) 3)));
+    Assertions.assertNotEquals(id, factorPool.idOf(weather, 1234, ForestType.MIXED));
+    Assertions.assertEquals(2, factorPool.size());
+  }
 }
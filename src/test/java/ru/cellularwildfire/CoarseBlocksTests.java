@@ -0,0 +1,75 @@
+package ru.cellularwildfire;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CoarseBlocks;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.Weather;
+
+public class CoarseBlocksTests {
+  private static final Grid GRID = new Grid(200);
+  private static final Cell.Factors FACTORS =
+      new Cell.Factors(new Weather(20, 0.3, 0, 0), 0, (byte) ForestType.MIXED);
+
+  private static List<Cell> createBurnedSquare(int size) {
+    List<Cell> cells = new ArrayList<>();
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        cells.add(new Cell(new Coordinates(x, y), new Cell.State(0.5, 20 + x, 5), FACTORS));
+      }
+    }
+    return cells;
+  }
+
+  private static long countGridCells(List<Cell> cells) {
+    return cells.stream().mapToLong(cell -> (long) cell.getSpan() * cell.getSpan()).sum();
+  }
+
+  @Test
+  public void testCellsWithinBudgetAreKept() {
+    List<Cell> cells = createBurnedSquare(8);
+    Assertions.assertSame(cells, CoarseBlocks.merge(cells, GRID, 64));
+  }
+
+  @Test
+  public void testBurnedOutSquareMergesIntoBlock() {
+    List<Cell> mergedCells = CoarseBlocks.merge(createBurnedSquare(8), GRID, 1);
+    Assertions.assertEquals(1, mergedCells.size());
+    Cell block = mergedCells.get(0);
+    Assertions.assertEquals(8, block.getSpan());
+    Assertions.assertEquals(new Coordinates(0, 0), block.getCoordinates());
+    Assertions.assertEquals(23.5, block.getState().getHeat(), 1e-6);
+    Assertions.assertEquals(0.5, block.getState().getInitialFuel(), 1e-6);
+    Assertions.assertTrue(block.getState().isDamaged());
+  }
+
+  @Test
+  public void testMergingStopsWithinBudget() {
+    List<Cell> mergedCells = CoarseBlocks.merge(createBurnedSquare(8), GRID, 16);
+    Assertions.assertEquals(16, mergedCells.size());
+    Assertions.assertTrue(mergedCells.stream().allMatch(cell -> cell.getSpan() == 2));
+  }
+
+  @Test
+  public void testPerimeterKeepsFullResolution() {
+    List<Cell> cells = createBurnedSquare(16);
+    Cell burningCell = new Cell(new Coordinates(16, 7), new Cell.State(0.5, 1000), FACTORS);
+    cells.add(burningCell);
+    List<Cell> mergedCells = CoarseBlocks.merge(cells, GRID, 1);
+
+    Assertions.assertEquals(countGridCells(cells), countGridCells(mergedCells));
+    Assertions.assertTrue(mergedCells.contains(burningCell));
+    for (int y = 6; y <= 8; y++) {
+      Coordinates coordinates = new Coordinates(15, y);
+      Assertions.assertTrue(
+          mergedCells.stream()
+              .anyMatch(cell -> cell.getCoordinates().equals(coordinates) && cell.getSpan() == 1));
+    }
+    Assertions.assertTrue(mergedCells.stream().anyMatch(cell -> cell.getSpan() == 8));
+  }
+}
@@ -0,0 +1,57 @@
+package ru.cellularwildfire;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.services.CombustionRateTable;
+
+public class CombustionRateTableTests {
+  private static double calculateHumidityInfluence(double airHumidity) {
+    return Math.pow(1 - airHumidity, 3);
+  }
+
+  private static double calculateTemperatureInfluence(byte forestType, double heat) {
+    double activationEnergy = ForestTypeFactors.determineActivationEnergy(forestType);
+    return 25_000_000 * Math.exp(-activationEnergy / 8.3 / (heat + 273));
+  }
+
+  private static CombustionRateTable createTable() {
+    return new CombustionRateTable(
+        500,
+        2000,
+        CombustionRateTableTests::calculateHumidityInfluence,
+        CombustionRateTableTests::calculateTemperatureInfluence);
+  }
+
+  @Test
+  public void testErrorBound() {
+    CombustionRateTable table = createTable();
+    Assertions.assertTrue(table.getMaxRelativeError() <= CombustionRateTable.MAX_RELATIVE_ERROR);
+
+    Random random = new Random(0);
+    for (int iteration = 0; iteration < 100_000; iteration++) {
+      byte forestType = (byte) (1 + random.nextInt(ForestType.MIXED));
+      double heat = (float) (500 + random.nextDouble() * 1500);
+      double airHumidity = random.nextInt(100) / 100.0;
+      Assertions.assertTrue(table.covers(forestType, heat, airHumidity));
+      double exactRate =
+          calculateHumidityInfluence(airHumidity)
+              * calculateTemperatureInfluence(forestType, heat);
+      double rate = table.calculate(forestType, heat, airHumidity);
+      Assertions.assertEquals(exactRate, rate, exactRate * CombustionRateTable.MAX_RELATIVE_ERROR);
+    }
+  }
+
+  @Test
+  public void testCoverage() {
+    CombustionRateTable table = createTable();
+    Assertions.assertTrue(table.covers(ForestType.MIXED, 500, 0));
+    Assertions.assertTrue(table.covers(ForestType.MIXED, 2000, 1));
+    Assertions.assertFalse(table.covers(ForestType.MIXED, 499.9, 0.5));
+    Assertions.assertFalse(table.covers(ForestType.MIXED, 2000.1, 0.5));
+    Assertions.assertFalse(table.covers(ForestType.MIXED, 800, 0.505));
+    Assertions.assertFalse(table.covers((byte) 0, 800, 0.5));
+  }
+}
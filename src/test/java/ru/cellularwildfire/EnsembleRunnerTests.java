@@ -0,0 +1,133 @@
+package ru.cellularwildfire;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.EnsembleAggregate;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Raster;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.EnsembleRunner;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.TerrainService;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class EnsembleRunnerTests {
+  private static final LatLng START_POINT = new LatLng(0, 0);
+  private static final Duration DURATION = Duration.ofHours(4);
+
+  private static EnsembleRunner createRunner(TerrainService terrainService) {
+    return new EnsembleRunner(
+        terrainService,
+        new UniformWeatherService(30, 0.3, -3, -2),
+        new AutomatonAlgorithm(),
+        new Simulator.Settings(),
+        2);
+  }
+
+  private static TerrainService createTerrainService() {
+    return new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180);
+  }
+
+  @Test
+  public void testUnperturbedMembersMatchSimulation() {
+    EnsembleAggregate aggregate =
+        createRunner(createTerrainService())
+            .run(new EnsembleRunner.Scenario(START_POINT, DURATION, 3));
+
+    Simulator simulator =
+        new Simulator(
+            createTerrainService(),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm());
+    Simulation simulation = simulator.createSimulation(START_POINT);
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, 8);
+
+    Assertions.assertEquals(3, aggregate.getMemberCount());
+    int damagedCount = 0;
+    for (Cell cell : simulation.getSteps().getLast().getCells()) {
+      double probability = aggregate.getBurnProbability(cell.getCoordinates());
+      Assertions.assertEquals(cell.getState().isDamaged() ? 1 : 0, probability);
+      damagedCount += cell.getState().isDamaged() ? 1 : 0;
+    }
+    Assertions.assertTrue(1 < damagedCount);
+    double[] damagedHectares = aggregate.getDamagedHectares();
+    Assertions.assertEquals(damagedHectares[0], damagedHectares[2]);
+
+    Raster raster = aggregate.getBurnProbabilityRaster();
+    double rasterSum = 0;
+    for (float value : raster.getValues()) {
+      rasterSum += value;
+    }
+    Assertions.assertEquals(damagedCount, rasterSum, 1e-6);
+  }
+
+  @Test
+  public void testPerturbedMembersSpreadProbabilities() {
+    AtomicInteger notifications = new AtomicInteger();
+    EnsembleRunner.Scenario scenario =
+        new EnsembleRunner.Scenario(START_POINT, DURATION, 6)
+            .withSeed(7)
+            .withIgnitionSpread(2)
+            .withTemperatureSpread(5)
+            .withHumiditySpread(0.1)
+            .withWindSpread(2)
+            .withParameterSpread(0.2);
+    EnsembleAggregate aggregate =
+        createRunner(createTerrainService())
+            .run(scenario, partialAggregate -> notifications.incrementAndGet());
+
+    Assertions.assertEquals(6, notifications.get());
+    Assertions.assertEquals(6, aggregate.getMemberCount());
+    Raster raster = aggregate.getBurnProbabilityRaster();
+    boolean hasUncertainCells = false;
+    for (float value : raster.getValues()) {
+      Assertions.assertTrue(0 <= value && value <= 1);
+      hasUncertainCells |= 0 < value && value < 1;
+    }
+    Assertions.assertTrue(hasUncertainCells);
+    Assertions.assertTrue(
+        aggregate.getDamagedHectaresQuantile(0.1) <= aggregate.getDamagedHectaresQuantile(0.9));
+  }
+
+  @Test
+  public void testTerrainIsLookedUpOncePerCell() {
+    Grid grid = new Grid(Simulator.DEFAULT_GRID_SCALE);
+    AtomicInteger lookups = new AtomicInteger();
+    Set<Long> cells = ConcurrentHashMap.newKeySet();
+    TerrainService terrainService = createTerrainService();
+    TerrainService countingTerrainService =
+        new TerrainService() {
+          @Override
+          public byte getForestType(LatLng point) {
+            return terrainService.getForestType(point);
+          }
+
+          @Override
+          public double getFuel(LatLng point) {
+            lookups.incrementAndGet();
+            cells.add(grid.coordinatesOf(point).pack());
+            return terrainService.getFuel(point);
+          }
+
+          @Override
+          public double getElevation(LatLng point) {
+            return terrainService.getElevation(point);
+          }
+        };
+    createRunner(countingTerrainService)
+        .run(new EnsembleRunner.Scenario(START_POINT, DURATION, 4).withIgnitionSpread(1));
+
+    Assertions.assertTrue(0 < lookups.get());
+    Assertions.assertEquals(cells.size(), lookups.get());
+  }
+}
@@ -0,0 +1,57 @@
+package ru.cellularwildfire;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.cellularwildfire.models.FrameStore;
+import ru.cellularwildfire.models.HeapFrameStore;
+import ru.cellularwildfire.models.MappedFrameStore;
+
+public final class FrameStoreTests {
+  private static ByteBuffer createFrame(int index, int length) {
+    ByteBuffer frame = ByteBuffer.allocate(length);
+    for (int position = 0; position < length; position++) {
+      frame.put((byte) (index + position));
+    }
+    return frame.flip();
+  }
+
+  static void assertStoredFrames(FrameStore store) {
+    // Large frames exceed a mapped block.
+    int[] lengths = {1, 1000, 3 << 20, 0, 9 << 20, 5 << 20, 17};
+    long byteCount = 0;
+    for (int index = 0; index < lengths.length; index++) {
+      Assertions.assertEquals(index, store.append(createFrame(index, lengths[index])));
+      byteCount += lengths[index];
+    }
+    Assertions.assertEquals(lengths.length, store.size());
+    Assertions.assertEquals(byteCount, store.countBytes());
+    for (int index = lengths.length - 1; 0 <= index; index--) {
+      ByteBuffer frame = store.read(index);
+      Assertions.assertTrue(frame.isReadOnly());
+      Assertions.assertEquals(createFrame(index, lengths[index]), frame);
+    }
+  }
+
+  @Test
+  public void testHeapFrameStore() {
+    assertStoredFrames(new HeapFrameStore());
+  }
+
+  @Test
+  public void testMappedFrameStore(@TempDir Path directory) throws Exception {
+    MappedFrameStore store = new MappedFrameStore(directory);
+    assertStoredFrames(store);
+    try (var files = Files.list(directory)) {
+      Assertions.assertEquals(1, files.count());
+    }
+
+    store.release();
+    try (var files = Files.list(directory)) {
+      Assertions.assertEquals(0, files.count());
+    }
+  }
+}
@@ -139,4 +139,35 @@ public final class GridTests {
     Coordinates twin = new Grid(10).getNeighbor(neighbor, 1, -1);
     Assertions.assertEquals(coordinates, twin);
   }
+
+  @Test
+  public void testBlockNeighbor() {
+    Grid grid = new Grid(10);
+    Assertions.assertEquals(new Coordinates(-8, 4), grid.getBlock(new Coordinates(-5, 7), 4));
+    Assertions.assertEquals(
+        new Coordinates(-4, 0), grid.getNeighbor(new Coordinates(-8, 4), 1, -1, 4));
+    Assertions.assertEquals(
+        new Coordinates(1796, 8), grid.getNeighbor(new Coordinates(-1800, 4), -1, 1, 4));
+  }
+
+  @Test
+  public void testBlockTopWraparound() {
+    Coordinates block = new Coordinates(0, 896);
+    Coordinates neighbor = new Grid(10).getNeighbor(block, 0, 1, 4);
+    Assertions.assertEquals(new Coordinates(-1800, 896), neighbor);
+    Assertions.assertEquals(block, new Grid(10).getNeighbor(neighbor, 0, 1, 4));
+  }
+
+  @Test
+  public void testBlockArea() {
+    Grid grid = new Grid(10);
+    double blockArea = grid.estimateCellArea(new Coordinates(0, 100), 4);
+    double cellAreaSum = 0;
+    for (int x = 0; x < 4; x++) {
+      for (int y = 100; y < 104; y++) {
+        cellAreaSum += grid.estimateCellArea(new Coordinates(x, y));
+      }
+    }
+    Assertions.assertEquals(cellAreaSum, blockArea, cellAreaSum * 1e-12);
+  }
 }
@@ -0,0 +1,42 @@
+package ru.cellularwildfire;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.services.HeatRegulationTable;
+
+public class HeatRegulationTableTests {
+  private static double regulate(double heat, double airTemperature, long[] pattern) {
+    // Discontinuous at 100 degrees like the iterative regulation is when its pattern changes.
+    boolean isHot = heat >= 100.2;
+    if (pattern != null) {
+      pattern[0] = isHot ? 1 : 0;
+    }
+    return airTemperature + Math.sqrt(heat - airTemperature) + (isHot ? 5 : 0);
+  }
+
+  @Test
+  public void testTableMatchesRegulation() {
+    HeatRegulationTable table =
+        new HeatRegulationTable(50, 2000, HeatRegulationTableTests::regulate);
+    Random random = new Random(0);
+    for (int iteration = 0; iteration < 100_000; iteration++) {
+      double airTemperature = random.nextInt(50) - 10;
+      double heat = 50 + random.nextDouble() * 1950;
+      Assertions.assertEquals(
+          regulate(heat, airTemperature, null),
+          table.regulate(heat, airTemperature),
+          HeatRegulationTable.MAX_ERROR);
+    }
+  }
+
+  @Test
+  public void testUntabulatedInputs() {
+    HeatRegulationTable table =
+        new HeatRegulationTable(50, 2000, HeatRegulationTableTests::regulate);
+    Assertions.assertEquals(regulate(20, 10, null), table.regulate(20, 10));
+    Assertions.assertEquals(regulate(3000, 10, null), table.regulate(3000, 10));
+    Assertions.assertEquals(regulate(500, 10.5, null), table.regulate(500, 10.5));
+    Assertions.assertEquals(regulate(100.3, 10, null), table.regulate(100.3, 10));
+  }
+}
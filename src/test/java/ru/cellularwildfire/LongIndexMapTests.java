@@ -0,0 +1,48 @@
+package ru.cellularwildfire;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.LongIndexMap;
+
+public class LongIndexMapTests {
+  @Test
+  public void testPutAndGet() {
+    LongIndexMap map = new LongIndexMap();
+    for (int x = -50; x < 50; x++) {
+      for (int y = -50; y < 50; y++) {
+        map.put(Coordinates.pack(x, y), (x + 50) * 100 + y + 50);
+      }
+    }
+    Assertions.assertEquals(10000, map.size());
+    for (int x = -50; x < 50; x++) {
+      for (int y = -50; y < 50; y++) {
+        Assertions.assertEquals((x + 50) * 100 + y + 50, map.get(Coordinates.pack(x, y)));
+      }
+    }
+    Assertions.assertEquals(LongIndexMap.NO_INDEX, map.get(Coordinates.pack(50, 0)));
+    Assertions.assertFalse(map.containsKey(Coordinates.pack(0, -51)));
+  }
+
+  @Test
+  public void testReplacement() {
+    LongIndexMap map = new LongIndexMap();
+    map.put(Coordinates.pack(3, -7), 1);
+    map.put(Coordinates.pack(3, -7), 2);
+    Assertions.assertEquals(1, map.size());
+    Assertions.assertEquals(2, map.get(Coordinates.pack(3, -7)));
+  }
+
+  @Test
+  public void testClear() {
+    LongIndexMap map = new LongIndexMap();
+    for (int index = 0; index < 1000; index++) {
+      map.put(index, index);
+    }
+    map.clear();
+    Assertions.assertEquals(0, map.size());
+    Assertions.assertEquals(LongIndexMap.NO_INDEX, map.get(500));
+    map.put(500, 7);
+    Assertions.assertEquals(7, map.get(500));
+  }
+}
@@ -0,0 +1,159 @@
+package ru.cellularwildfire;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.LookAheadScheduler;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.WeatherService;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class LookAheadSchedulerTests {
+  private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(30);
+
+  private static Simulator createSimulator() {
+    return new Simulator(
+        new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+        new UniformWeatherService(30, 0.3, -3, -2),
+        new AutomatonAlgorithm());
+  }
+
+  private static Simulation startSimulation(Simulator simulator) {
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    return simulation;
+  }
+
+  private static void awaitLookAhead(LookAheadScheduler scheduler, Simulation simulation)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + WAIT_TIMEOUT.toNanos();
+    while (scheduler.isLookingAhead(simulation.getId())) {
+      Assertions.assertTrue(System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testStepsAreComputedAhead() throws InterruptedException {
+    Simulator simulator = createSimulator();
+    LookAheadScheduler scheduler = new LookAheadScheduler(simulator, 4, 2, Duration.ofMinutes(1));
+    Simulation simulation = startSimulation(simulator);
+    simulator.progressSimulation(simulation, 2);
+    scheduler.request(simulation, 2);
+    awaitLookAhead(scheduler, simulation);
+
+    Assertions.assertEquals(7, simulation.getSteps().size());
+    Simulation expectedSimulation = startSimulation(simulator);
+    simulator.progressSimulation(expectedSimulation, 6);
+    Assertions.assertEquals(
+        expectedSimulation.getSteps().getLast().countCells(),
+        simulation.getSteps().getLast().countCells());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testDisabledSchedulerDoesNothing() {
+    Simulator simulator = createSimulator();
+    LookAheadScheduler scheduler = new LookAheadScheduler(simulator, 0, 2, Duration.ofMinutes(1));
+    Simulation simulation = startSimulation(simulator);
+    scheduler.request(simulation, 0);
+
+    Assertions.assertFalse(scheduler.isLookingAhead(simulation.getId()));
+    Assertions.assertEquals(1, simulation.getSteps().size());
+  }
+
+  @Test
+  public void testLookAheadPausesForIdleAndReleasedSimulations() throws InterruptedException {
+    Simulator simulator = createSimulator();
+    LookAheadScheduler idleScheduler = new LookAheadScheduler(simulator, 4, 1, Duration.ZERO);
+    Simulation idleSimulation = startSimulation(simulator);
+    idleScheduler.request(idleSimulation, 0);
+    awaitLookAhead(idleScheduler, idleSimulation);
+    Assertions.assertTrue(idleSimulation.getSteps().size() < 5);
+    idleScheduler.shutdown();
+
+    LookAheadScheduler scheduler = new LookAheadScheduler(simulator, 4, 1, Duration.ofMinutes(1));
+    Simulation releasedSimulation = startSimulation(simulator);
+    releasedSimulation.release();
+    scheduler.request(releasedSimulation, 0);
+    awaitLookAhead(scheduler, releasedSimulation);
+    Assertions.assertEquals(1, releasedSimulation.getSteps().size());
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testShutdownReleasesCoordinatorsOfDroppedSteps() throws InterruptedException {
+    WeatherService weatherService = new UniformWeatherService(30, 0.3, -3, -2);
+    AtomicBoolean isHolding = new AtomicBoolean(false);
+    CountDownLatch heldStep = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            (point, date) -> {
+              if (isHolding.get()) {
+                heldStep.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException exception) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+              return weatherService.getWeather(point, date);
+            },
+            new AutomatonAlgorithm());
+    LookAheadScheduler scheduler = new LookAheadScheduler(simulator, 4, 1, Duration.ofMinutes(1));
+    Simulation heldSimulation = startSimulation(simulator);
+    Simulation queuedSimulation = startSimulation(simulator);
+
+    // The only step thread is held, so the step of the other simulation stays queued.
+    isHolding.set(true);
+    scheduler.request(heldSimulation, 0);
+    Assertions.assertTrue(heldStep.await(WAIT_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS));
+    scheduler.request(queuedSimulation, 0);
+    // Gives the coordinator of the other simulation time to queue its step.
+    Thread.sleep(200);
+    Thread shutdown = Thread.ofVirtual().start(scheduler::shutdown);
+    isHolding.set(false);
+    release.countDown();
+
+    Assertions.assertTrue(shutdown.join(WAIT_TIMEOUT));
+    awaitLookAhead(scheduler, heldSimulation);
+    awaitLookAhead(scheduler, queuedSimulation);
+  }
+
+  @Test
+  public void testReadersWaitingForStepsDoNotPinCarriers() throws InterruptedException {
+    Simulation simulation = startSimulation(createSimulator());
+    List<Thread> readers = new ArrayList<>();
+    simulation.getLock().lock();
+    try {
+      // More readers wait for the simulation lock than there are carrier threads.
+      for (int index = 0; index < 2 * Runtime.getRuntime().availableProcessors(); index++) {
+        readers.add(Thread.ofVirtual().start(() -> simulation.getSteps().size()));
+      }
+      long deadline = System.nanoTime() + WAIT_TIMEOUT.toNanos();
+      while (simulation.getLock().getQueueLength() < readers.size()) {
+        Assertions.assertTrue(System.nanoTime() < deadline);
+        Thread.sleep(10);
+      }
+      Thread probe = Thread.ofVirtual().start(() -> {});
+      Assertions.assertTrue(probe.join(WAIT_TIMEOUT));
+    } finally {
+      simulation.getLock().unlock();
+    }
+    for (Thread reader : readers) {
+      Assertions.assertTrue(reader.join(WAIT_TIMEOUT));
+    }
+  }
+}
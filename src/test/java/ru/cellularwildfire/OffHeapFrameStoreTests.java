@@ -0,0 +1,19 @@
+package ru.cellularwildfire;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.models.OffHeapFrameStore;
+
+/** Tests of the off-heap frame store, which is built with the preview profile only. */
+public final class OffHeapFrameStoreTests {
+  @Test
+  public void testOffHeapFrameStore() {
+    OffHeapFrameStore store = new OffHeapFrameStore();
+    FrameStoreTests.assertStoredFrames(store);
+    ByteBuffer frame = store.read(1);
+
+    store.release();
+    Assertions.assertThrows(IllegalStateException.class, frame::get);
+  }
+}
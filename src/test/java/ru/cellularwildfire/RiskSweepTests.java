@@ -0,0 +1,88 @@
+package ru.cellularwildfire;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Raster;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.RiskSweep;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class RiskSweepTests {
+  private static final Grid GRID = new Grid(Simulator.DEFAULT_GRID_SCALE);
+  private static final Duration DURATION = Duration.ofHours(3);
+
+  private static Simulator createSimulator() {
+    return new Simulator(
+        new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+        new UniformWeatherService(30, 0.3, -3, -2),
+        new AutomatonAlgorithm());
+  }
+
+  private static RiskSweep createSweep() {
+    return new RiskSweep(
+        new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+        new UniformWeatherService(30, 0.3, -3, -2),
+        new AutomatonAlgorithm(),
+        new Simulator.Settings(),
+        2);
+  }
+
+  private static double simulateDamagedHectares(Coordinates startCoordinates) {
+    Simulator simulator = createSimulator();
+    Simulation simulation = simulator.createSimulation(GRID.pointOf(startCoordinates));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, 6);
+    double area = 0;
+    for (Cell cell : simulation.getSteps().getLast().getCells()) {
+      if (cell.getState().isDamaged()) {
+        area += GRID.estimateCellArea(cell.getCoordinates(), cell.getSpan());
+      }
+    }
+    return area / 10000;
+  }
+
+  @Test
+  public void testSweepMatchesSingleSimulations() {
+    LatLng lowerCorner = GRID.pointOf(new Coordinates(10, -20));
+    LatLng upperCorner = GRID.pointOf(new Coordinates(12, -19));
+    Raster raster = createSweep().sweep(lowerCorner, upperCorner, DURATION);
+
+    Assertions.assertEquals(new Coordinates(10, -20), raster.getOrigin());
+    Assertions.assertEquals(3, raster.getWidth());
+    Assertions.assertEquals(2, raster.getHeight());
+    for (int x = 0; x < raster.getWidth(); x++) {
+      for (int y = 0; y < raster.getHeight(); y++) {
+        double expectedHectares = simulateDamagedHectares(new Coordinates(10 + x, -20 + y));
+        Assertions.assertTrue(0 < expectedHectares);
+        Assertions.assertEquals(expectedHectares, raster.getValue(x, y), expectedHectares * 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testAsciiGridRowsGoFromNorth() throws IOException {
+    Raster raster = new Raster(new Coordinates(-400, 200), 2, 2, new float[] {1, 2, 3, 4});
+    StringWriter writer = new StringWriter();
+    RiskSweep.writeAsciiGrid(raster, GRID, writer);
+
+    String[] lines = writer.toString().split("\\R");
+    Assertions.assertEquals("ncols 2", lines[0]);
+    Assertions.assertEquals("nrows 2", lines[1]);
+    Assertions.assertEquals(-2, Double.parseDouble(lines[2].split(" ")[1]), 1e-9);
+    Assertions.assertEquals(1, Double.parseDouble(lines[3].split(" ")[1]), 1e-9);
+    Assertions.assertEquals(0.005, Double.parseDouble(lines[4].split(" ")[1]), 1e-9);
+    Assertions.assertEquals(3, Double.parseDouble(lines[6].split(" ")[0]));
+    Assertions.assertEquals(2, Double.parseDouble(lines[7].split(" ")[1]));
+  }
+}
@@ -0,0 +1,150 @@
+package ru.cellularwildfire;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.scheduler.Schedulers;
+import ru.cellularwildfire.api.SimulationController;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepWireFormat;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.CellIndexCache;
+import ru.cellularwildfire.services.LookAheadScheduler;
+import ru.cellularwildfire.services.SimulationManager;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.StepPayloadCache;
+import ru.cellularwildfire.services.StepPublisher;
+import ru.cellularwildfire.services.TileRenderer;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class SimulationControllerTests {
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+  private final Simulator simulator =
+      new Simulator(
+          new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+          new UniformWeatherService(30, 0.3, -3, -2),
+          new AutomatonAlgorithm());
+  private final SimulationManager simulationManager = new SimulationManager(10);
+  private final MockMvc mockMvc =
+      MockMvcBuilders.standaloneSetup(
+              new SimulationController(
+                  simulationManager,
+                  simulator,
+                  new LookAheadScheduler(simulator, 0, 1, Duration.ZERO),
+                  new StepPublisher(simulator, Schedulers.immediate()),
+                  new StepPayloadCache(objectMapper, 0),
+                  new TileRenderer(new CellIndexCache(0), 1, 1, 0),
+                  new CellIndexCache(0),
+                  objectMapper))
+          .build();
+
+  private Simulation startSimulation() {
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulationManager.addSimulation(simulation);
+    return simulation;
+  }
+
+  private MockHttpServletResponse requestProgress(Simulation simulation, String accept)
+      throws Exception {
+    return requestProgress(
+        "{\"simulationId\":\"%s\",\"startTick\":0,\"endTick\":2}".formatted(simulation.getId()),
+        accept);
+  }
+
+  private MockHttpServletResponse requestProgress(String params, String accept)
+      throws Exception {
+    MvcResult result =
+        mockMvc
+            .perform(
+                MockMvcRequestBuilders.post("/simulation/progress")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header("Accept", accept)
+                    .content(params))
+            .andReturn();
+    return mockMvc
+        .perform(MockMvcRequestBuilders.asyncDispatch(result))
+        .andReturn()
+        .getResponse();
+  }
+
+  private void assertJsonSteps(MockHttpServletResponse response) throws IOException {
+    Assertions.assertEquals(200, response.getStatus());
+    Assertions.assertTrue(
+        MediaType.APPLICATION_JSON.isCompatibleWith(
+            MediaType.parseMediaType(response.getContentType())));
+    JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+    Assertions.assertEquals(3, body.get("steps").size());
+  }
+
+  @Test
+  public void testAnyAcceptedTypeGetsJson() throws Exception {
+    assertJsonSteps(requestProgress(startSimulation(), "*/*"));
+  }
+
+  @Test
+  public void testJsonGetsJson() throws Exception {
+    assertJsonSteps(requestProgress(startSimulation(), MediaType.APPLICATION_JSON_VALUE));
+  }
+
+  @Test
+  public void testVendorTypeGetsBinarySteps() throws Exception {
+    Simulation simulation = startSimulation();
+    MockHttpServletResponse response = requestProgress(simulation, StepWireFormat.MEDIA_TYPE);
+
+    Assertions.assertEquals(200, response.getStatus());
+    Assertions.assertEquals(StepWireFormat.MEDIA_TYPE, response.getContentType());
+    List<Simulation.Step> steps =
+        StepWireFormat.read(new ByteArrayInputStream(response.getContentAsByteArray()));
+    Assertions.assertEquals(3, steps.size());
+    Assertions.assertEquals(
+        simulation.getSteps().get(2).countCells(), steps.get(2).countCells());
+  }
+
+  @Test
+  public void testDeltasAreStreamedAsJson() throws Exception {
+    Simulation simulation = startSimulation();
+    String params =
+        "{\"simulationId\":\"%s\",\"startTick\":0,\"endTick\":2,\"delta\":true}"
+            .formatted(simulation.getId());
+    MockHttpServletResponse response = requestProgress(params, MediaType.APPLICATION_JSON_VALUE);
+
+    Assertions.assertEquals(200, response.getStatus());
+    JsonNode body = objectMapper.readTree(response.getContentAsByteArray());
+    Assertions.assertEquals(3, body.get("deltas").size());
+  }
+
+  @Test
+  public void testUnsimulatedBaseTickIsNamed() throws Exception {
+    Simulation simulation = startSimulation();
+    String params =
+        "{\"simulationId\":\"%s\",\"startTick\":6,\"endTick\":8,\"baseTick\":5,\"delta\":true}"
+            .formatted(simulation.getId());
+    MockHttpServletResponse response =
+        mockMvc
+            .perform(
+                MockMvcRequestBuilders.post("/simulation/progress")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(params))
+            .andReturn()
+            .getResponse();
+
+    Assertions.assertEquals(400, response.getStatus());
+    Assertions.assertEquals("Base tick 5 not simulated", response.getErrorMessage());
+  }
+}
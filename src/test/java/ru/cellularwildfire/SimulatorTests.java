@@ -1,16 +1,27 @@
 package ru.cellularwildfire;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import ru.cellularwildfire.data.ForestTypeFactors;
 import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CellLayout;
 import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
 import ru.cellularwildfire.models.LatLng;
 import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepColumns;
 import ru.cellularwildfire.services.AutomatonAlgorithm;
 import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
 import ru.cellularwildfire.tuner.services.UniformTerrainService;
 import ru.cellularwildfire.tuner.services.UniformWeatherService;
 
@@ -36,6 +47,57 @@ public final class SimulatorTests {
         new AutomatonAlgorithm());
   }
 
+  private static Simulator createSlopedSimulator(Simulator.Settings settings) {
+    return new Simulator(
+        new SlopedTerrainService(ForestTypeFactors.ForestType.MIXED, 0.7, 10, 180),
+        new UniformWeatherService(30, 0.3, -7, -5),
+        new AutomatonAlgorithm(),
+        settings);
+  }
+
+  private static void assertEqualSteps(Simulation expected, Simulation actual) {
+    assertEqualSteps(expected, actual, 0);
+  }
+
+  private static void assertEqualSteps(Simulation expected, Simulation actual, double heatDelta) {
+    Assertions.assertEquals(expected.getSteps().size(), actual.getSteps().size());
+    for (int tick = 0; tick < expected.getSteps().size(); tick++) {
+      assertEqualCells(
+          expected.getSteps().get(tick).getCells(),
+          actual.getSteps().get(tick).getCells(),
+          heatDelta);
+    }
+  }
+
+  private static void assertEqualCells(
+      List<Cell> expectedCells, List<Cell> actualCells, double heatDelta) {
+    Assertions.assertEquals(expectedCells.size(), actualCells.size());
+    // Retired cells are rendered after the live cells of a step.
+    expectedCells = sortByCoordinates(expectedCells);
+    actualCells = sortByCoordinates(actualCells);
+    for (int index = 0; index < expectedCells.size(); index++) {
+      Cell expectedCell = expectedCells.get(index);
+      Cell actualCell = actualCells.get(index);
+      Assertions.assertEquals(expectedCell.getCoordinates(), actualCell.getCoordinates());
+      Assertions.assertEquals(expectedCell.getFactors(), actualCell.getFactors());
+      Assertions.assertEquals(
+          expectedCell.getState().getHeat(), actualCell.getState().getHeat(), heatDelta);
+      Assertions.assertEquals(
+          expectedCell.getState().getCumulativeCombustionRate(),
+          actualCell.getState().getCumulativeCombustionRate(),
+          heatDelta == 0 ? 0 : 1e-3 * expectedCell.getState().getCumulativeCombustionRate());
+      Assertions.assertEquals(expectedCell.isBurning(), actualCell.isBurning());
+    }
+  }
+
+  private static List<Cell> sortByCoordinates(List<Cell> cells) {
+    return cells.stream()
+        .sorted(
+            Comparator.comparingInt((Cell cell) -> cell.getCoordinates().getX())
+                .thenComparingInt(cell -> cell.getCoordinates().getY()))
+        .toList();
+  }
+
   @Test
   public void testSimulationSteps() {
     Simulator simulator = createSimulator(1_000_000_000);
@@ -129,4 +191,336 @@ public final class SimulatorTests {
     simulator.progressSimulation(simulation2, 100000);
     Assertions.assertEquals(1 + 2 * 4, simulation2.getSteps().size());
   }
+
+  @Test
+  public void testColumnarEngineMatchesObjectEngine() {
+    Simulator objectSimulator =
+        createSlopedSimulator(new Simulator.Settings().withEngine(Simulator.Engine.OBJECT));
+    Simulator columnarSimulator =
+        createSlopedSimulator(new Simulator.Settings().withEngine(Simulator.Engine.COLUMNAR));
+    Simulation objectSimulation = createSimulation(objectSimulator);
+    Simulation columnarSimulation = createSimulation(columnarSimulator);
+
+    objectSimulator.tryStartSimulation(objectSimulation);
+    columnarSimulator.tryStartSimulation(columnarSimulation);
+    objectSimulator.progressSimulation(objectSimulation, 12);
+    columnarSimulator.progressSimulation(columnarSimulation, 12);
+
+    Assertions.assertEquals(13, columnarSimulation.getSteps().size());
+    // Frozen cells stop approaching the air temperature once their heat has settled.
+    assertEqualSteps(objectSimulation, columnarSimulation, 0.1);
+  }
+
+  @Test
+  public void testPolarColumnarEngineMatchesObjectEngine() {
+    for (LatLng startPoint : List.of(new LatLng(-90 + 0.001, 0), new LatLng(90 - 0.001, 180))) {
+      Simulator objectSimulator =
+          createSlopedSimulator(new Simulator.Settings().withEngine(Simulator.Engine.OBJECT));
+      Simulator columnarSimulator =
+          createSlopedSimulator(new Simulator.Settings().withEngine(Simulator.Engine.COLUMNAR));
+      Simulation objectSimulation = createSimulation(objectSimulator, startPoint);
+      Simulation columnarSimulation = createSimulation(columnarSimulator, startPoint);
+
+      objectSimulator.tryStartSimulation(objectSimulation);
+      columnarSimulator.tryStartSimulation(columnarSimulation);
+      objectSimulator.progressSimulation(objectSimulation, 12);
+      columnarSimulator.progressSimulation(columnarSimulation, 12);
+
+      Assertions.assertEquals(13, columnarSimulation.getSteps().size());
+      assertEqualSteps(objectSimulation, columnarSimulation, 0.1);
+    }
+
+    // Cells of the polar row half the globe apart are grid neighbors through the pole.
+    Grid grid = new Grid(200);
+    CellLayout layout = new CellLayout();
+    int slot = layout.addSlot(grid, new Coordinates(0, -90 * 200), 1);
+    layout.addSlot(grid, new Coordinates(-180 * 200, -90 * 200), 1);
+    for (int offsetX = -1; offsetX <= 1; offsetX++) {
+      for (int offsetY = -1; offsetY <= 1; offsetY++) {
+        Assertions.assertEquals(CellLayout.NO_SLOT, layout.getNeighbor(slot, offsetX, offsetY));
+      }
+    }
+  }
+
+  @Test
+  public void testLayoutSnapshotsHideLaterSlots() {
+    Grid grid = new Grid(200);
+    CellLayout layout = new CellLayout();
+    int slot = layout.addSlot(grid, new Coordinates(0, 0), 1);
+    CellLayout snapshot = layout.snapshot();
+    int neighborSlot = layout.addSlot(grid, new Coordinates(1, 0), 1);
+
+    Assertions.assertEquals(neighborSlot, layout.getNeighbor(slot, 1, 0));
+    Assertions.assertEquals(1, snapshot.size());
+    Assertions.assertEquals(CellLayout.NO_SLOT, snapshot.getNeighbor(slot, 1, 0));
+    Assertions.assertThrows(
+        IllegalStateException.class, () -> snapshot.addSlot(grid, new Coordinates(0, 1), 1));
+  }
+
+  @Test
+  public void testDeterministicRefinementIgnoresParallelism() {
+    Simulator serialSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulation serialSimulation = createSimulation(serialSimulator);
+    serialSimulator.tryStartSimulation(serialSimulation);
+    serialSimulator.progressSimulation(serialSimulation, 20);
+
+    for (int parallelism : new int[] {2, 4, 8}) {
+      Simulator parallelSimulator =
+          createSlopedSimulator(
+              new Simulator.Settings().withParallelism(parallelism).withDeterministic(true));
+      Simulation parallelSimulation = createSimulation(parallelSimulator);
+      parallelSimulator.tryStartSimulation(parallelSimulation);
+      parallelSimulator.progressSimulation(parallelSimulation, 20);
+
+      Assertions.assertEquals(21, parallelSimulation.getSteps().size());
+      assertEqualSteps(serialSimulation, parallelSimulation);
+    }
+  }
+
+  @Test
+  public void testDeterministicRefinementRepeatsParallelRuns() {
+    // Every simulator refines on a fresh pool of its own.
+    int[][] parallelismPairs = {{4, 4}, {3, 8}};
+    for (int[] parallelismPair : parallelismPairs) {
+      Simulation[] simulations = new Simulation[parallelismPair.length];
+      for (int index = 0; index < parallelismPair.length; index++) {
+        Simulator simulator =
+            createSlopedSimulator(
+                new Simulator.Settings()
+                    .withParallelism(parallelismPair[index])
+                    .withDeterministic(true));
+        simulations[index] = createSimulation(simulator);
+        simulator.tryStartSimulation(simulations[index]);
+        simulator.progressSimulation(simulations[index], 40);
+      }
+
+      Assertions.assertEquals(41, simulations[0].getSteps().size());
+      assertEqualSteps(simulations[0], simulations[1]);
+    }
+  }
+
+  @Test
+  public void testUnorderedRefinementMatchesSerialRefinement() {
+    Simulator serialSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulator parallelSimulator =
+        createSlopedSimulator(
+            new Simulator.Settings().withParallelism(4).withDeterministic(false));
+    Simulation serialSimulation = createSimulation(serialSimulator);
+    Simulation parallelSimulation = createSimulation(parallelSimulator);
+
+    serialSimulator.tryStartSimulation(serialSimulation);
+    parallelSimulator.tryStartSimulation(parallelSimulation);
+    serialSimulator.progressSimulation(serialSimulation, 20);
+    parallelSimulator.progressSimulation(parallelSimulation, 20);
+
+    Assertions.assertEquals(21, parallelSimulation.getSteps().size());
+    // Sums of energy shares are rounded in the order the threads add them.
+    assertEqualSteps(serialSimulation, parallelSimulation, 0.1);
+  }
+
+  @Test
+  public void testRenderCellBudgetCoarsensBurnedOutCells() {
+    Simulator simulator = createSlopedSimulator(new Simulator.Settings());
+    Simulation simulation = createSimulation(simulator);
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, 40);
+
+    for (Simulator.Engine engine : Simulator.Engine.values()) {
+      Simulator budgetedSimulator =
+          createSlopedSimulator(
+              new Simulator.Settings().withEngine(engine).withRenderCellBudget(100));
+      Simulation budgetedSimulation = createSimulation(budgetedSimulator);
+      budgetedSimulator.tryStartSimulation(budgetedSimulation);
+      budgetedSimulator.progressSimulation(budgetedSimulation, 40);
+
+      List<Cell> cells = simulation.getSteps().getLast().getCells();
+      List<Cell> budgetedCells = budgetedSimulation.getSteps().getLast().getCells();
+      Assertions.assertTrue(budgetedCells.size() < cells.size());
+      Assertions.assertTrue(budgetedCells.stream().anyMatch(cell -> 1 < cell.getSpan()));
+      Assertions.assertEquals(
+          cells.size(),
+          budgetedCells.stream().mapToLong(cell -> (long) cell.getSpan() * cell.getSpan()).sum());
+      Assertions.assertEquals(
+          cells.stream().filter(Cell::isBurning).count(),
+          budgetedCells.stream().filter(Cell::isBurning).count());
+    }
+  }
+
+  @Test
+  public void testVectorKernelsMatchScalarKernels() {
+    // Vector kernels are built with the preview profile only.
+    AutomatonAlgorithm algorithm = new AutomatonAlgorithm();
+    Assumptions.assumeTrue(
+        algorithm.createKernels(AutomatonAlgorithm.Kernel.SCALAR).getClass()
+            != algorithm.createKernels(AutomatonAlgorithm.Kernel.VECTOR).getClass());
+
+    Simulator scalarSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulator vectorSimulator =
+        createSlopedSimulator(new Simulator.Settings().withKernel(AutomatonAlgorithm.Kernel.VECTOR));
+    Simulation scalarSimulation = createSimulation(scalarSimulator);
+    Simulation vectorSimulation = createSimulation(vectorSimulator);
+
+    scalarSimulator.tryStartSimulation(scalarSimulation);
+    vectorSimulator.tryStartSimulation(vectorSimulation);
+    scalarSimulator.progressSimulation(scalarSimulation, 20);
+    vectorSimulator.progressSimulation(vectorSimulation, 20);
+
+    Assertions.assertEquals(21, vectorSimulation.getSteps().size());
+    // Vector kernels evaluate exact formulas while scalar kernels use tables.
+    assertEqualSteps(scalarSimulation, vectorSimulation, 0.1);
+  }
+
+  @Test
+  public void testStepHistoryDecodesEveryStep() {
+    Simulator simulator = createSlopedSimulator(new Simulator.Settings());
+    Simulation simulation = createSimulation(simulator);
+    List<List<Cell>> liveCells = new ArrayList<>();
+
+    simulator.tryStartSimulation(simulation);
+    liveCells.add(simulation.getSteps().getLast().getCells());
+    long snapshotBytes = 16L * simulation.getSteps().getLast().countCells();
+    for (int tick = 1; tick <= 80; tick++) {
+      simulator.progressSimulation(simulation, tick);
+      liveCells.add(simulation.getSteps().getLast().getCells());
+      snapshotBytes += 16L * simulation.getSteps().getLast().countCells();
+    }
+
+    Assertions.assertEquals(81, simulation.getSteps().size());
+    for (int tick = 0; tick <= 80; tick++) {
+      assertEqualCells(liveCells.get(tick), simulation.getSteps().get(tick).getCells(), 0);
+    }
+    for (int tick = 80; 0 <= tick; tick -= 7) {
+      assertEqualCells(liveCells.get(tick), simulation.getSteps().get(tick).getCells(), 0);
+    }
+    Assertions.assertTrue(simulation.getSteps().countFrameBytes() < snapshotBytes / 2);
+  }
+
+  @Test
+  public void testCheckpointHistoryRecomputesEveryStep() {
+    Simulator deltaSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulator checkpointSimulator =
+        createSlopedSimulator(new Simulator.Settings().withHistoryBudget(100_000));
+    Simulation deltaSimulation = createSimulation(deltaSimulator);
+    Simulation checkpointSimulation = createSimulation(checkpointSimulator);
+
+    deltaSimulator.tryStartSimulation(deltaSimulation);
+    checkpointSimulator.tryStartSimulation(checkpointSimulation);
+    deltaSimulator.progressSimulation(deltaSimulation, 60);
+    checkpointSimulator.progressSimulation(checkpointSimulation, 60);
+
+    Assertions.assertTrue(4 < checkpointSimulation.getSteps().getKeyframeInterval());
+    Assertions.assertTrue(
+        checkpointSimulation.getSteps().countFrameBytes()
+            < deltaSimulation.getSteps().countFrameBytes() / 4);
+    assertEqualSteps(deltaSimulation, checkpointSimulation);
+    for (int tick = 60; 0 <= tick; tick -= 9) {
+      assertEqualCells(
+          deltaSimulation.getSteps().get(tick).getCells(),
+          checkpointSimulation.getSteps().get(tick).getCells(),
+          0);
+    }
+  }
+
+  @Test
+  public void testMappedHistoryMatchesHeapHistory(@TempDir Path frameDirectory) {
+    Simulator heapSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulator mappedSimulator =
+        createSlopedSimulator(
+            new Simulator.Settings()
+                .withFrameStorage(Simulator.FrameStorage.MAPPED)
+                .withFrameDirectory(frameDirectory));
+    Simulation heapSimulation = createSimulation(heapSimulator);
+    Simulation mappedSimulation = createSimulation(mappedSimulator);
+
+    heapSimulator.tryStartSimulation(heapSimulation);
+    mappedSimulator.tryStartSimulation(mappedSimulation);
+    heapSimulator.progressSimulation(heapSimulation, 40);
+    mappedSimulator.progressSimulation(mappedSimulation, 40);
+
+    assertEqualSteps(heapSimulation, mappedSimulation);
+    mappedSimulation.release();
+  }
+
+  @Test
+  public void testReleasedHistoryIsNotRead() {
+    Simulator simulator =
+        createSlopedSimulator(
+            new Simulator.Settings().withFrameStorage(Simulator.FrameStorage.OFF_HEAP));
+    Simulation simulation = createSimulation(simulator);
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, 20);
+    Assertions.assertTrue(simulation.getSteps().findStep(5).isPresent());
+
+    simulation.release();
+    simulator.progressSimulation(simulation, 30);
+    Assertions.assertEquals(21, simulation.getSteps().size());
+    Assertions.assertTrue(simulation.getSteps().findStep(5).isEmpty());
+    Assertions.assertTrue(simulation.getSteps().findStep(20).isEmpty());
+    Assertions.assertTrue(0 < simulation.getSteps().getLast().countCells());
+  }
+
+  @Test
+  public void testObjectEngineRetiresBurnedOutCells() {
+    Simulator objectSimulator =
+        createSlopedSimulator(new Simulator.Settings().withEngine(Simulator.Engine.OBJECT));
+    Simulator columnarSimulator = createSlopedSimulator(new Simulator.Settings());
+    Simulation objectSimulation = createSimulation(objectSimulator);
+    Simulation columnarSimulation = createSimulation(columnarSimulator);
+
+    objectSimulator.tryStartSimulation(objectSimulation);
+    columnarSimulator.tryStartSimulation(columnarSimulation);
+    objectSimulator.progressSimulation(objectSimulation, 60);
+    columnarSimulator.progressSimulation(columnarSimulation, 60);
+
+    Simulation.Step lastStep = objectSimulation.getSteps().getLast();
+    int retiredCount = objectSimulation.getBurnedArea().size();
+    Assertions.assertTrue(0 < retiredCount);
+    Assertions.assertEquals(lastStep.countCells() - retiredCount, lastStep.getLiveCells().size());
+    List<Cell> cells = lastStep.getCells();
+    for (Cell cell : cells.subList(lastStep.getLiveCells().size(), cells.size())) {
+      Assertions.assertTrue(objectSimulation.getBurnedArea().contains(cell.getCoordinates()));
+      Assertions.assertTrue(cell.getState().isDamaged());
+      Assertions.assertFalse(cell.isBurning());
+    }
+    // Retired cells keep the heat they have cooled down to.
+    assertEqualSteps(columnarSimulation, objectSimulation, 1);
+
+    // The columnar engine processes only its active front, which leaves out retirable cells.
+    int[] activeSlots =
+        columnarSimulation.getSteps().getLast().getColumns().orElseThrow().getActiveSlots();
+    Assertions.assertTrue(activeSlots.length <= lastStep.getLiveCells().size());
+    for (int slot : activeSlots) {
+      Coordinates coordinates = columnarSimulation.getLayout().getCoordinates(slot);
+      Assertions.assertFalse(objectSimulation.getBurnedArea().contains(coordinates));
+    }
+  }
+
+  @Test
+  public void testColumnarEngineRetiresBurnedOutCells() {
+    Simulator simulator = createSlopedSimulator(new Simulator.Settings());
+    Simulator checkpointSimulator =
+        createSlopedSimulator(new Simulator.Settings().withHistoryBudget(4_000_000));
+    Simulation simulation = createSimulation(simulator);
+    Simulation checkpointSimulation = createSimulation(checkpointSimulator);
+    simulator.tryStartSimulation(simulation);
+    checkpointSimulator.tryStartSimulation(checkpointSimulation);
+    simulator.progressSimulation(simulation, 60);
+    checkpointSimulator.progressSimulation(checkpointSimulation, 60);
+
+    StepColumns lastColumns = simulation.getSteps().getLast().getColumns().orElseThrow();
+    int retiredCount = 0;
+    for (int slot = 0; slot < lastColumns.size(); slot++) {
+      Coordinates coordinates = simulation.getLayout().getCoordinates(slot);
+      if (simulation.getBurnedArea().contains(coordinates)) {
+        retiredCount++;
+        Assertions.assertTrue(lastColumns.materialize(slot).getState().isDamaged());
+        Assertions.assertFalse(lastColumns.isBurning(slot));
+        Assertions.assertTrue(Arrays.binarySearch(lastColumns.getActiveSlots(), slot) < 0);
+      }
+    }
+    Assertions.assertTrue(0 < retiredCount);
+    // Retired cells keep their state in the columns and are replayed from checkpoints the same.
+    Assertions.assertEquals(lastColumns.size(), simulation.getSteps().getLast().countCells());
+    assertEqualSteps(simulation, checkpointSimulation);
+  }
 }
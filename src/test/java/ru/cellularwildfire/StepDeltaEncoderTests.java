@@ -0,0 +1,107 @@
+package ru.cellularwildfire;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepDelta;
+import ru.cellularwildfire.models.StepDeltaEncoder;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class StepDeltaEncoderTests {
+  private static Simulation simulate(Simulator.Settings settings, int ticks) {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm(),
+            settings);
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, ticks);
+    return simulation;
+  }
+
+  private static void apply(Map<Coordinates, Cell> clientCells, StepDelta delta) {
+    if (delta.isFull()) {
+      clientCells.clear();
+    }
+    for (Coordinates coordinates : delta.getRemovedCoordinates()) {
+      clientCells.remove(coordinates);
+    }
+    for (Cell cell : delta.getCells()) {
+      clientCells.put(cell.getCoordinates(), cell);
+    }
+  }
+
+  private static void assertWithinTolerances(Map<Coordinates, Cell> clientCells, List<Cell> cells) {
+    Assertions.assertEquals(cells.size(), clientCells.size());
+    for (Cell cell : cells) {
+      Cell clientCell = clientCells.get(cell.getCoordinates());
+      Assertions.assertNotNull(clientCell);
+      Assertions.assertEquals(cell.getSpan(), clientCell.getSpan());
+      Assertions.assertEquals(cell.getFactors(), clientCell.getFactors());
+      Assertions.assertEquals(cell.isBurning(), clientCell.isBurning());
+      Assertions.assertEquals(cell.getState().isDamaged(), clientCell.getState().isDamaged());
+      Assertions.assertEquals(
+          cell.getState().getHeat(),
+          clientCell.getState().getHeat(),
+          StepDeltaEncoder.HEAT_TOLERANCE);
+      Assertions.assertEquals(
+          cell.getState().getFuel(),
+          clientCell.getState().getFuel(),
+          StepDeltaEncoder.FUEL_TOLERANCE);
+    }
+  }
+
+  /** Returns the share of cells sent in deltas among all cells of the steps after the first. */
+  private static double replayDeltas(Simulation simulation, int baseTick) {
+    List<Simulation.Step> steps = simulation.getSteps();
+    Map<Coordinates, Cell> clientCells = new HashMap<>();
+    apply(clientCells, StepDelta.full(baseTick, steps.get(baseTick)));
+    StepDeltaEncoder encoder = new StepDeltaEncoder(steps.get(baseTick));
+    long sentCount = 0;
+    long cellCount = 0;
+    for (int tick = baseTick + 1; tick < steps.size(); tick++) {
+      StepDelta delta = encoder.encode(tick, steps.get(tick));
+      Assertions.assertEquals(tick, delta.getTick());
+      Assertions.assertEquals(steps.get(tick).isFinal(), delta.isFinal());
+      apply(clientCells, delta);
+      assertWithinTolerances(clientCells, steps.get(tick).getCells());
+      sentCount += delta.getCells().size();
+      cellCount += steps.get(tick).countCells();
+    }
+    return (double) sentCount / cellCount;
+  }
+
+  @Test
+  public void testColumnarDeltasReproduceSteps() {
+    Simulation simulation = simulate(new Simulator.Settings(), 120);
+    Assertions.assertTrue(replayDeltas(simulation, 0) < 0.5);
+    replayDeltas(simulation, 60);
+  }
+
+  @Test
+  public void testObjectDeltasReproduceSteps() {
+    Simulation simulation =
+        simulate(new Simulator.Settings().withEngine(Simulator.Engine.OBJECT), 30);
+    replayDeltas(simulation, 0);
+  }
+
+  @Test
+  public void testCoarseDeltasRemoveMergedCells() {
+    Simulation simulation = simulate(new Simulator.Settings().withRenderCellBudget(50), 40);
+    Assertions.assertTrue(
+        simulation.getSteps().getLast().getCells().stream().anyMatch(cell -> 1 < cell.getSpan()));
+    replayDeltas(simulation, 0);
+  }
+}
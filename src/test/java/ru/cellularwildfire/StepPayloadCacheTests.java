@@ -0,0 +1,140 @@
+package ru.cellularwildfire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.StepPayloadCache;
+import ru.cellularwildfire.services.StepPayloadCache.Encoding;
+import ru.cellularwildfire.services.WeatherService;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class StepPayloadCacheTests {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static Simulation simulate(int ticks) {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm(),
+            new Simulator.Settings());
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, ticks);
+    return simulation;
+  }
+
+  private static byte[] decompress(byte[] bytes, Encoding encoding) throws IOException {
+    InputStream input = new ByteArrayInputStream(bytes);
+    input = encoding == Encoding.ZSTD ? new ZstdInputStream(input) : new GZIPInputStream(input);
+    return input.readAllBytes();
+  }
+
+  @Test
+  public void testWrittenStepsMatchJson() throws IOException {
+    Simulation simulation = simulate(10);
+    List<Simulation.Step> steps = simulation.getSteps().subList(3, 11);
+    StepPayloadCache cache = new StepPayloadCache(OBJECT_MAPPER, 1 << 24);
+    for (Encoding encoding : Encoding.values()) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      cache.writeSteps(simulation, 3, steps, encoding, output);
+      Assertions.assertEquals(
+          OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsBytes(Map.of("steps", steps))),
+          OBJECT_MAPPER.readTree(decompress(output.toByteArray(), encoding)));
+    }
+  }
+
+  @Test
+  public void testPayloadsAreEncodedOnce() {
+    Simulation simulation = simulate(5);
+    Simulation.Step step = simulation.getSteps().get(4);
+    StepPayloadCache cache = new StepPayloadCache(OBJECT_MAPPER, 1 << 24);
+    byte[] payload = cache.getPayload(simulation, 4, step, Encoding.GZIP);
+    Assertions.assertSame(payload, cache.getPayload(simulation, 4, step, Encoding.GZIP));
+    Assertions.assertNotSame(payload, cache.getPayload(simulation, 4, step, Encoding.ZSTD));
+
+    StepPayloadCache disabledCache = new StepPayloadCache(OBJECT_MAPPER, 0);
+    Assertions.assertNotSame(
+        disabledCache.getPayload(simulation, 4, step, Encoding.GZIP),
+        disabledCache.getPayload(simulation, 4, step, Encoding.GZIP));
+    Assertions.assertEquals(0, disabledCache.getCachedBytes());
+  }
+
+  @Test
+  public void testEviction() {
+    Simulation simulation = simulate(20);
+    Simulation.Step lastStep = simulation.getSteps().get(20);
+    StepPayloadCache disabledCache = new StepPayloadCache(OBJECT_MAPPER, 0);
+    int budget = 3 * disabledCache.getPayload(simulation, 20, lastStep, Encoding.ZSTD).length;
+    StepPayloadCache cache = new StepPayloadCache(OBJECT_MAPPER, budget);
+    for (int tick = 0; tick <= 20; tick++) {
+      cache.getPayload(simulation, tick, simulation.getSteps().get(tick), Encoding.ZSTD);
+      Assertions.assertTrue(cache.getCachedBytes() <= budget);
+    }
+    Simulation.Step step = simulation.getSteps().get(19);
+    byte[] payload = cache.getPayload(simulation, 19, step, Encoding.ZSTD);
+    Assertions.assertSame(payload, cache.getPayload(simulation, 19, step, Encoding.ZSTD));
+
+    Simulation otherSimulation = simulate(1);
+    simulation.release();
+    cache.getPayload(otherSimulation, 0, otherSimulation.getSteps().get(0), Encoding.ZSTD);
+    Assertions.assertEquals(
+        cache.getPayload(otherSimulation, 0, otherSimulation.getSteps().get(0), Encoding.ZSTD)
+            .length,
+        cache.getCachedBytes());
+  }
+
+  @Test
+  public void testLastStepIsCachedOnceFinal() {
+    WeatherService weatherService = new UniformWeatherService(30, 0.3, -3, -2);
+    AtomicBoolean isWeatherKnown = new AtomicBoolean(true);
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            (point, date) ->
+                isWeatherKnown.get() ? weatherService.getWeather(point, date) : Optional.empty(),
+            new AutomatonAlgorithm(),
+            new Simulator.Settings());
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, 2);
+    Simulation.Step lastStep = simulation.getSteps().getLast();
+    StepPayloadCache cache = new StepPayloadCache(OBJECT_MAPPER, 1 << 24);
+    byte[] payload = cache.getPayload(simulation, 2, lastStep, Encoding.GZIP);
+    Assertions.assertNotSame(payload, cache.getPayload(simulation, 2, lastStep, Encoding.GZIP));
+    Assertions.assertEquals(0, cache.getCachedBytes());
+
+    // The simulation fails to progress without weather and marks its last step final.
+    isWeatherKnown.set(false);
+    simulator.progressSimulation(simulation, 10);
+    Assertions.assertSame(lastStep, simulation.getSteps().getLast());
+    Assertions.assertTrue(lastStep.isFinal());
+    payload = cache.getPayload(simulation, 2, lastStep, Encoding.GZIP);
+    Assertions.assertSame(payload, cache.getPayload(simulation, 2, lastStep, Encoding.GZIP));
+  }
+
+  @Test
+  public void testEncodingNegotiation() {
+    Assertions.assertEquals(Optional.of(Encoding.ZSTD), Encoding.negotiate("gzip, br, zstd"));
+    Assertions.assertEquals(Optional.of(Encoding.GZIP), Encoding.negotiate("gzip, deflate"));
+    Assertions.assertEquals(Optional.of(Encoding.GZIP), Encoding.negotiate("ZSTD;q=0, gzip"));
+    Assertions.assertEquals(Optional.empty(), Encoding.negotiate("br, gzip; q=0.0"));
+    Assertions.assertEquals(Optional.empty(), Encoding.negotiate(null));
+  }
+}
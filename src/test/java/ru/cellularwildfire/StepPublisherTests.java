@@ -0,0 +1,93 @@
+package ru.cellularwildfire;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.StepPublisher;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class StepPublisherTests {
+  private static Simulator createSimulator() {
+    return new Simulator(
+        new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+        new UniformWeatherService(30, 0.3, -3, -2),
+        new AutomatonAlgorithm());
+  }
+
+  private static Simulation startSimulation(Simulator simulator) {
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    return simulation;
+  }
+
+  @Test
+  public void testStepsArePublishedUpToEndTick() {
+    Simulator simulator = createSimulator();
+    StepPublisher publisher = new StepPublisher(simulator, Schedulers.immediate());
+    Simulation simulation = startSimulation(simulator);
+    List<Simulation.Step> steps = publisher.publishSteps(simulation, 2, 5).collectList().block();
+
+    Assertions.assertNotNull(steps);
+    Assertions.assertEquals(4, steps.size());
+    Assertions.assertEquals(6, simulation.getSteps().size());
+    for (int index = 0; index < steps.size(); index++) {
+      Assertions.assertEquals(
+          simulation.getSteps().get(2 + index).countCells(), steps.get(index).countCells());
+    }
+  }
+
+  @Test
+  public void testPublishingStopsAtFinalStep() {
+    Simulator simulator =
+        new Simulator(
+            new UniformTerrainService(ForestType.MIXED, 0, 0),
+            new UniformWeatherService(30, 0.3, 0, 0),
+            new AutomatonAlgorithm());
+    StepPublisher publisher = new StepPublisher(simulator, Schedulers.immediate());
+    Simulation simulation = startSimulation(simulator);
+    List<Simulation.Step> steps = publisher.publishSteps(simulation, 0, 100).collectList().block();
+
+    Assertions.assertNotNull(steps);
+    Assertions.assertTrue(steps.get(steps.size() - 1).isFinal());
+    Assertions.assertEquals(simulation.getSteps().size(), steps.size());
+  }
+
+  @Test
+  public void testStepsAreComputedOnDemand() {
+    Simulator simulator = createSimulator();
+    StepPublisher publisher = new StepPublisher(simulator, Schedulers.immediate());
+    Simulation simulation = startSimulation(simulator);
+    List<Simulation.Step> steps = new ArrayList<>();
+    BaseSubscriber<Simulation.Step> subscriber =
+        new BaseSubscriber<>() {
+          @Override
+          protected void hookOnSubscribe(Subscription subscription) {
+            request(2);
+          }
+
+          @Override
+          protected void hookOnNext(Simulation.Step step) {
+            steps.add(step);
+          }
+        };
+    publisher.publishSteps(simulation, 0, 100).subscribe(subscriber);
+
+    Assertions.assertEquals(2, steps.size());
+    Assertions.assertEquals(2, simulation.getSteps().size());
+    subscriber.request(3);
+    Assertions.assertEquals(5, steps.size());
+    Assertions.assertEquals(5, simulation.getSteps().size());
+    subscriber.dispose();
+  }
+}
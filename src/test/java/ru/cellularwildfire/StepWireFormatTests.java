@@ -0,0 +1,93 @@
+package ru.cellularwildfire;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.models.StepWireFormat;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class StepWireFormatTests {
+  private static Simulation simulate(Simulator.Settings settings, int ticks) {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm(),
+            settings);
+    Simulation simulation = simulator.createSimulation(new LatLng(0, 0));
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, ticks);
+    return simulation;
+  }
+
+  private static List<Simulation.Step> encodeAndDecode(List<Simulation.Step> steps)
+      throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StepWireFormat.write(steps, output);
+    return StepWireFormat.read(new ByteArrayInputStream(output.toByteArray()));
+  }
+
+  private static void assertEquivalentSteps(
+      List<Simulation.Step> expectedSteps, List<Simulation.Step> actualSteps) {
+    Assertions.assertEquals(expectedSteps.size(), actualSteps.size());
+    for (int tick = 0; tick < expectedSteps.size(); tick++) {
+      List<Cell> expectedCells = expectedSteps.get(tick).getCells();
+      List<Cell> actualCells = actualSteps.get(tick).getCells();
+      Assertions.assertEquals(expectedSteps.get(tick).isFinal(), actualSteps.get(tick).isFinal());
+      Assertions.assertEquals(expectedCells.size(), actualCells.size());
+      for (int index = 0; index < expectedCells.size(); index++) {
+        Cell expected = expectedCells.get(index);
+        Cell actual = actualCells.get(index);
+        Assertions.assertEquals(expected.getCoordinates(), actual.getCoordinates());
+        Assertions.assertEquals(expected.getSpan(), actual.getSpan());
+        Assertions.assertEquals(expected.getFactors(), actual.getFactors());
+        Assertions.assertEquals(expected.getState().getHeat(), actual.getState().getHeat(), 0.5);
+        Assertions.assertEquals(
+            expected.getState().getInitialFuel(), actual.getState().getInitialFuel(), 5e-4);
+        Assertions.assertEquals(expected.getState().getFuel(), actual.getState().getFuel(), 1e-3);
+        Assertions.assertEquals(expected.getState().isDamaged(), actual.getState().isDamaged());
+      }
+    }
+  }
+
+  @Test
+  public void testColumnarStepsRoundTrip() throws IOException {
+    Simulation simulation = simulate(new Simulator.Settings(), 8);
+    assertEquivalentSteps(simulation.getSteps(), encodeAndDecode(simulation.getSteps()));
+  }
+
+  @Test
+  public void testObjectAndCoarseStepsRoundTrip() throws IOException {
+    Simulation objectSimulation =
+        simulate(new Simulator.Settings().withEngine(Simulator.Engine.OBJECT), 8);
+    assertEquivalentSteps(
+        objectSimulation.getSteps(), encodeAndDecode(objectSimulation.getSteps()));
+
+    Simulation coarseSimulation = simulate(new Simulator.Settings().withRenderCellBudget(50), 40);
+    List<Simulation.Step> decodedSteps = encodeAndDecode(coarseSimulation.getSteps());
+    Assertions.assertTrue(
+        decodedSteps.getLast().getCells().stream().anyMatch(cell -> 1 < cell.getSpan()));
+    assertEquivalentSteps(coarseSimulation.getSteps(), decodedSteps);
+  }
+
+  @Test
+  public void testBinaryIsSmallerThanJson() throws IOException {
+    Simulation simulation = simulate(new Simulator.Settings(), 20);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StepWireFormat.write(simulation.getSteps(), output);
+    byte[] json = new ObjectMapper().writeValueAsBytes(simulation.getSteps());
+
+    Assertions.assertTrue(output.size() * 10 < json.length);
+  }
+}
@@ -0,0 +1,176 @@
+package ru.cellularwildfire;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.cellularwildfire.data.ForestTypeFactors.ForestType;
+import ru.cellularwildfire.models.Cell;
+import ru.cellularwildfire.models.CellIndex;
+import ru.cellularwildfire.models.Coordinates;
+import ru.cellularwildfire.models.Grid;
+import ru.cellularwildfire.models.LatLng;
+import ru.cellularwildfire.models.Weather;
+import ru.cellularwildfire.models.Simulation;
+import ru.cellularwildfire.services.AutomatonAlgorithm;
+import ru.cellularwildfire.services.CellIndexCache;
+import ru.cellularwildfire.services.Simulator;
+import ru.cellularwildfire.services.TileRenderer;
+import ru.cellularwildfire.tuner.services.SlopedTerrainService;
+import ru.cellularwildfire.tuner.services.UniformWeatherService;
+
+public final class TileRendererTests {
+  private static final LatLng START_POINT = new LatLng(50.2, 30.3);
+  private static final int ZOOM = 12;
+
+  private static Simulation simulate(int ticks) {
+    Simulator simulator =
+        new Simulator(
+            new SlopedTerrainService(ForestType.MIXED, 0.7, 10, 180),
+            new UniformWeatherService(30, 0.3, -3, -2),
+            new AutomatonAlgorithm(),
+            new Simulator.Settings());
+    Simulation simulation = simulator.createSimulation(START_POINT);
+    simulator.tryStartSimulation(simulation);
+    simulator.progressSimulation(simulation, ticks);
+    return simulation;
+  }
+
+  private static int tileX(double lng) {
+    return (int) Math.floor((lng + 180) / 360 * (1 << ZOOM));
+  }
+
+  private static int tileY(double lat) {
+    double latRadians = Math.toRadians(lat);
+    double y = (1 - Math.log(Math.tan(latRadians) + 1 / Math.cos(latRadians)) / Math.PI) / 2;
+    return (int) Math.floor(y * (1 << ZOOM));
+  }
+
+  private static TileRenderer createRenderer() {
+    return new TileRenderer(new CellIndexCache(1 << 20), 1, 16, 1 << 20);
+  }
+
+  private static byte[] renderTile(
+      TileRenderer renderer, Simulation simulation, int tick, int x, int y) throws Exception {
+    return renderer.renderTile(simulation, tick, simulation.getSteps().get(tick), ZOOM, x, y).get();
+  }
+
+  private static int countOpaquePixels(byte[] tile) throws IOException {
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile));
+    Assertions.assertEquals(TileRenderer.TILE_SIZE, image.getWidth());
+    Assertions.assertEquals(TileRenderer.TILE_SIZE, image.getHeight());
+    int count = 0;
+    for (int row = 0; row < image.getHeight(); row++) {
+      for (int column = 0; column < image.getWidth(); column++) {
+        count += image.getRGB(column, row) >>> 24 == 0 ? 0 : 1;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testFireIsRendered() throws Exception {
+    Simulation simulation = simulate(20);
+    int x = tileX(START_POINT.lng);
+    int y = tileY(START_POINT.lat);
+    TileRenderer renderer = createRenderer();
+    try {
+      int startPixels = countOpaquePixels(renderTile(renderer, simulation, 0, x, y));
+      int laterPixels = countOpaquePixels(renderTile(renderer, simulation, 20, x, y));
+      Assertions.assertTrue(0 < startPixels);
+      Assertions.assertTrue(startPixels < laterPixels);
+      Assertions.assertEquals(
+          0, countOpaquePixels(renderTile(renderer, simulation, 20, x + 3, y)));
+    } finally {
+      renderer.shutdown();
+    }
+  }
+
+  @Test
+  public void testCellsAreColoredByState() throws IOException {
+    Simulation simulation = simulate(20);
+    Simulation.Step step = simulation.getSteps().get(20);
+    Cell burningCell = step.getCells().stream().filter(Cell::isBurning).findFirst().orElseThrow();
+    LatLng point = simulation.getGrid().pointOf(burningCell.getCoordinates());
+    int zoom = 18;
+    double worldSize = TileRenderer.TILE_SIZE * (double) (1 << zoom);
+    double pixelX = (point.lng + 180) / 360 * worldSize;
+    double latRadians = Math.toRadians(point.lat);
+    double pixelY =
+        (1 - Math.log(Math.tan(latRadians) + 1 / Math.cos(latRadians)) / Math.PI) / 2 * worldSize;
+    int x = (int) (pixelX / TileRenderer.TILE_SIZE);
+    int y = (int) (pixelY / TileRenderer.TILE_SIZE);
+
+    byte[] tile =
+        TileRenderer.renderTile(
+            simulation.getGrid(), new CellIndex(step.getCells()), zoom, x, y);
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(tile));
+    int color =
+        image.getRGB(
+            (int) pixelX - x * TileRenderer.TILE_SIZE, (int) pixelY - y * TileRenderer.TILE_SIZE);
+    Assertions.assertNotEquals(0, color >>> 24);
+    Assertions.assertTrue((color >> 16 & 0xFF) >= 200);
+    Assertions.assertTrue((color >> 8 & 0xFF) <= 180);
+    Assertions.assertEquals(0, color & 0xFF);
+  }
+
+  @Test
+  public void testTilesAreCached() throws Exception {
+    Simulation simulation = simulate(5);
+    int x = tileX(START_POINT.lng);
+    int y = tileY(START_POINT.lat);
+    TileRenderer renderer = createRenderer();
+    try {
+      byte[] tile = renderTile(renderer, simulation, 4, x, y);
+      Assertions.assertSame(tile, renderTile(renderer, simulation, 4, x, y));
+      Assertions.assertNotSame(tile, renderTile(renderer, simulation, 3, x, y));
+    } finally {
+      renderer.shutdown();
+    }
+  }
+
+  @Test
+  public void testLastStepIsNotCachedUntilFinal() throws Exception {
+    Simulation simulation = simulate(5);
+    Assertions.assertFalse(simulation.getSteps().get(5).isFinal());
+    int x = tileX(START_POINT.lng);
+    int y = tileY(START_POINT.lat);
+    TileRenderer renderer = createRenderer();
+    try {
+      byte[] tile = renderTile(renderer, simulation, 5, x, y);
+      Assertions.assertNotSame(tile, renderTile(renderer, simulation, 5, x, y));
+    } finally {
+      renderer.shutdown();
+    }
+  }
+
+  @Test
+  public void testBlocksAcrossAntimeridianAreRenderedOnBothSides() throws IOException {
+    Grid grid = new Grid(200);
+    Cell.Factors factors = new Cell.Factors(new Weather(20, 0.3, 0, 0), 0, (byte) ForestType.MIXED);
+    Coordinates corner = grid.getBlock(grid.coordinatesOf(new LatLng(0.1, -180)), 64);
+    Assertions.assertTrue(corner.getX() < -180 * grid.getScale());
+    CellIndex index =
+        new CellIndex(List.of(new Cell(corner, new Cell.State(0.5, 1000), factors, 64)));
+    int zoom = 10;
+    int y = (1 << zoom) / 2 - 1;
+
+    Assertions.assertTrue(0 < countOpaquePixels(TileRenderer.renderTile(grid, index, zoom, 0, y)));
+    Assertions.assertTrue(
+        0 < countOpaquePixels(TileRenderer.renderTile(grid, index, zoom, (1 << zoom) - 1, y)));
+    Assertions.assertEquals(
+        0, countOpaquePixels(TileRenderer.renderTile(grid, index, zoom, (1 << zoom) - 2, y)));
+  }
+
+  @Test
+  public void testTileValidation() {
+    Assertions.assertTrue(TileRenderer.isValidTile(0, 0, 0));
+    Assertions.assertTrue(TileRenderer.isValidTile(ZOOM, (1 << ZOOM) - 1, 0));
+    Assertions.assertFalse(TileRenderer.isValidTile(ZOOM, 1 << ZOOM, 0));
+    Assertions.assertFalse(TileRenderer.isValidTile(ZOOM, 0, -1));
+    Assertions.assertFalse(TileRenderer.isValidTile(TileRenderer.MAX_ZOOM + 1, 0, 0));
+  }
+}